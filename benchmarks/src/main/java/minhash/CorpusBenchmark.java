@@ -0,0 +1,69 @@
+package minhash;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and tokenizing documents: a whole collection into a Corpus, and a
+ * single file through the Tokenizer.
+ *
+ * @author YAN DENG
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CorpusBenchmark {
+
+	@Param({ "500", "2000" })
+	public int documents;
+
+	@Param({ "300" })
+	public int words;
+
+	private String folder;
+	private File[] files;
+	private Tokenizer tokenizer;
+	private int next;
+
+	@Setup
+	public void setup() throws IOException {
+		File directory = SyntheticCorpus.folder(documents, words);
+		folder = directory.getPath();
+		files = directory.listFiles();
+		tokenizer = new Tokenizer();
+	}
+
+	/**
+	 * Read, tokenize and encode every file of the folder.
+	 */
+	@Benchmark
+	public int readCorpus() {
+		return new Corpus(folder).numTerms();
+	}
+
+	/**
+	 * Tokenize one file.
+	 */
+	@Benchmark
+	public int tokenizeFile() throws IOException {
+		next = (next + 1) % files.length;
+		return tokenizer.tokenize(files[next]);
+	}
+}
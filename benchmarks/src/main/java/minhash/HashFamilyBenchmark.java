@@ -0,0 +1,69 @@
+package minhash;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of the hash families: minimize over a block of keys, reported per
+ * key, i.e. for k hashes. The keys are random 64 bit fingerprints or
+ * consecutive integers. The bias of their estimates is checked by
+ * HashFamilyBias.
+ *
+ * @author YAN DENG
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashFamilyBenchmark {
+
+	private static final int KEYS = 1 << 12;
+
+	@Param({ "MERSENNE", "MULTIPLY_SHIFT", "TABULATION", "MURMUR" })
+	public HashFamily.Kind kind;
+
+	@Param({ "256" })
+	public int k;
+
+	@Param({ "true", "false" })
+	public boolean randomKeys;
+
+	private HashFamily family;
+	private long[] keys = new long[KEYS];
+	private long[] minimums;
+
+	@Setup
+	public void setup() {
+		family = HashFamily.create(kind, k, 1);
+		minimums = new long[k];
+		Random rand = new Random(42);
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = randomKeys ? rand.nextLong() : i;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public long[] minimize() {
+		for (long key : keys) {
+			family.minimize(key, minimums);
+		}
+		return minimums;
+	}
+}
@@ -0,0 +1,78 @@
+package minhash;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building an LSH index over the signatures of a collection, and querying it
+ * with a document of the collection.
+ *
+ * @author YAN DENG
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LSHBenchmark {
+
+	private static final int K = 200;
+
+	@Param({ "500", "2000" })
+	public int documents;
+
+	@Param({ "20", "50" })
+	public int bands;
+
+	private SignatureMatrix matrix;
+	private String[] names;
+	private LSH lsh;
+	private int next;
+
+	@Setup
+	public void setup() throws IOException {
+		Corpus corpus = new Corpus(SyntheticCorpus.folder(documents, 300).getPath());
+		MinHash minHash = SyntheticCorpus.minHash(corpus, K, MinHash.Scheme.K_PERMUTATIONS);
+		matrix = minHash.signatureMatrix();
+		names = minHash.allDocs();
+		lsh = new LSH(matrix, names, bands);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public LSH build() {
+		return new LSH(matrix, names, bands);
+	}
+
+	@Benchmark
+	public String[] nearDuplicatesOf() {
+		next = (next + 1) % names.length;
+		return lsh.nearDuplicatesOf(names[next]);
+	}
+
+	@Benchmark
+	public LSH.Match[] query() {
+		next = (next + 1) % names.length;
+		return lsh.query(matrix.row(next), 0.5);
+	}
+
+	@Benchmark
+	public LSH.Match[] topK() {
+		next = (next + 1) % names.length;
+		return lsh.topK(names[next], 10);
+	}
+}
@@ -0,0 +1,72 @@
+package minhash;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Computing MinHash signatures: of one document, and of the whole collection
+ * in one thread.
+ *
+ * @author YAN DENG
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureBenchmark {
+
+	@Param({ "2000" })
+	public int documents;
+
+	@Param({ "64", "256" })
+	public int k;
+
+	@Param({ "K_PERMUTATIONS", "ONE_PERMUTATION" })
+	public MinHash.Scheme scheme;
+
+	private Corpus corpus;
+	private MinHash minHash;
+	private String[] names;
+	private int next;
+
+	@Setup
+	public void setup() throws IOException {
+		corpus = new Corpus(SyntheticCorpus.folder(documents, 300).getPath());
+		minHash = SyntheticCorpus.minHash(corpus, k, scheme);
+		names = minHash.allDocs();
+	}
+
+	/**
+	 * Signature of one document.
+	 */
+	@Benchmark
+	public int[] minHashSig() {
+		next = (next + 1) % names.length;
+		return minHash.minHashSig(names[next]);
+	}
+
+	/**
+	 * Signatures of all documents, by a new MinHash since the matrix is kept
+	 * once computed.
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public SignatureMatrix minHashMatrix() {
+		return SyntheticCorpus.minHash(corpus, k, scheme).signatureMatrix();
+	}
+}
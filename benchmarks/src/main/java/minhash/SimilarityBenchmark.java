@@ -0,0 +1,96 @@
+package minhash;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comparing two documents: the estimate from the signatures, as separate
+ * arrays, as rows of the flat matrix and one row against a block of rows,
+ * and the exact Jaccard similarity from the binary frequency matrix.
+ *
+ * @author YAN DENG
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimilarityBenchmark {
+
+	private static final int PAIRS = 1 << 12;
+	private static final int BLOCK = 256; // rows of approximateJaccardBlock
+
+	@Param({ "2000" })
+	public int documents;
+
+	@Param({ "64", "256", "1024" })
+	public int k;
+
+	private MinHash minHash;
+	private SignatureMatrix matrix;
+	private int[][] rows;
+	private String[] names;
+	private int[] first = new int[PAIRS];
+	private int[] second = new int[PAIRS];
+	private double[] similarities = new double[BLOCK];
+	private int next;
+
+	@Setup
+	public void setup() throws IOException {
+		Corpus corpus = new Corpus(SyntheticCorpus.folder(documents, 300).getPath());
+		minHash = SyntheticCorpus.minHash(corpus, k, MinHash.Scheme.K_PERMUTATIONS);
+		matrix = minHash.signatureMatrix();
+		rows = matrix.toArray();
+		names = minHash.allDocs();
+		minHash.binaryFreqMatrix();
+		Random rand = new Random(1);
+		for (int i = 0; i < PAIRS; i++) {
+			first[i] = rand.nextInt(documents);
+			second[i] = rand.nextInt(documents);
+		}
+	}
+
+	@Benchmark
+	public double approximateJaccardArrays() {
+		next = (next + 1) & (PAIRS - 1);
+		return MinHash.approximateJaccard(rows[first[next]], rows[second[next]]);
+	}
+
+	@Benchmark
+	public double approximateJaccardMatrix() {
+		next = (next + 1) & (PAIRS - 1);
+		return matrix.approximateJaccard(first[next], second[next]);
+	}
+
+	/**
+	 * One row against BLOCK consecutive rows, the time of the whole block.
+	 */
+	@Benchmark
+	public double[] approximateJaccardBlock() {
+		next = (next + 1) & (PAIRS - 1);
+		int from = second[next] % (documents - BLOCK);
+		matrix.approximateJaccard(first[next], from, from + BLOCK, similarities);
+		return similarities;
+	}
+
+	@Benchmark
+	public double exactJaccard() {
+		next = (next + 1) & (PAIRS - 1);
+		return minHash.exactJaccard(names[first[next]], names[second[next]]);
+	}
+}
@@ -0,0 +1,133 @@
+package minhash;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.io.OutputStreamWriter;
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generates document collections for the benchmarks, so that they run the
+ * same everywhere without a corpus to download. Words are drawn from a
+ * vocabulary of made up words with Zipf frequencies, like the words of real
+ * text, and every base document comes with edited copies, a few of its words
+ * replaced, so that the collection holds near duplicates of all degrees.
+ *
+ * A collection is written once to the temporary directory and reused by later
+ * runs and forks; the same parameters always give the same files. The marker
+ * of a complete collection lies next to its folder, so that the folder holds
+ * nothing but the documents.
+ *
+ * @author YAN DENG
+ *
+ */
+public class SyntheticCorpus {
+
+	private static final int VOCABULARY = 20000;
+	private static final int COPIES = 4; // edited copies of every base document
+
+	/**
+	 * Write the collection, unless it exists.
+	 *
+	 * @param documents
+	 *            number of documents
+	 * @param words
+	 *            number of words of a document
+	 * @return Returns the folder of the collection
+	 * @throws IOException
+	 */
+	public static File folder(int documents, int words) throws IOException {
+		File folder = new File(System.getProperty("java.io.tmpdir"), "minhash-corpus-" + documents + "-" + words);
+		File done = new File(folder.getPath() + ".complete"); // next to the folder, not a document
+		if (done.exists())
+			return folder;
+		File[] stale = folder.listFiles(); // of an interrupted or older run
+		if (stale != null) {
+			for (File file : stale) {
+				file.delete();
+			}
+		}
+		folder.mkdirs();
+		Random rand = new Random(documents * 31L + words);
+		String[] vocabulary = vocabulary(rand);
+		double[] cumulative = zipf(VOCABULARY);
+		int[] base = new int[words];
+		for (int doc = 0; doc < documents; doc++) {
+			int copy = doc % (COPIES + 1);
+			if (copy == 0) {
+				for (int i = 0; i < words; i++) {
+					base[i] = draw(cumulative, rand);
+				}
+			}
+			double editRate = copy == 0 ? 0 : 0.05 + 0.4 * rand.nextDouble();
+			Writer out = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(new File(folder, "doc-" + doc + ".txt")), StandardCharsets.UTF_8));
+			try {
+				for (int i = 0; i < words; i++) {
+					int word = rand.nextDouble() < editRate ? draw(cumulative, rand) : base[i];
+					out.write(vocabulary[word]);
+					out.write(i % 12 == 11 ? ".\n" : " ");
+				}
+			} finally {
+				out.close();
+			}
+		}
+		done.createNewFile();
+		return folder;
+	}
+
+	private static String[] vocabulary(Random rand) {
+		String[] vocabulary = new String[VOCABULARY];
+		for (int i = 0; i < VOCABULARY; i++) {
+			char[] word = new char[3 + rand.nextInt(8)];
+			for (int j = 0; j < word.length; j++) {
+				word[j] = (char) ('a' + rand.nextInt(26));
+			}
+			vocabulary[i] = new String(word);
+		}
+		return vocabulary;
+	}
+
+	/**
+	 *
+	 * @return Returns the cumulative Zipf distribution over the ranks
+	 */
+	private static double[] zipf(int size) {
+		double[] cumulative = new double[size];
+		double sum = 0;
+		for (int i = 0; i < size; i++) {
+			sum += 1.0 / (i + 1);
+			cumulative[i] = sum;
+		}
+		for (int i = 0; i < size; i++) {
+			cumulative[i] /= sum;
+		}
+		return cumulative;
+	}
+
+	private static int draw(double[] cumulative, Random rand) {
+		int index = java.util.Arrays.binarySearch(cumulative, rand.nextDouble());
+		return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+	}
+
+	/**
+	 * Build a MinHash without its progress output, which would otherwise be
+	 * printed at every benchmark invocation.
+	 *
+	 * @return Returns the MinHash over the corpus
+	 */
+	public static MinHash minHash(Corpus corpus, int numPermutations, MinHash.Scheme scheme) {
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+		try {
+			return new MinHash(corpus, numPermutations, scheme, 1, 42L);
+		} finally {
+			System.setOut(out);
+		}
+	}
+}
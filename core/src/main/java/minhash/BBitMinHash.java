@@ -0,0 +1,188 @@
+package minhash;
+
+import java.util.HashMap;
+
+/**
+ * b-bit MinHash: only the lowest b bits (1 to 8) of every min hash value are
+ * kept, floor(64/b) of them packed into each long, and all rows are stored in
+ * one flat long array. At k = 800 a row takes 800*b/8 bytes instead of 3200.
+ *
+ * Two rows are compared word by word: the XOR of two words is non-zero in
+ * exactly the lanes that differ. Each lane is folded into its top bit, by
+ * adding all ones to its lower b-1 bits (the carry reaches the top bit iff
+ * one of them is set) and OR-ing the XOR back in, and Long.bitCount of the
+ * top bits gives the number of differing lanes, at the same cost for any b.
+ *
+ * Two different min hash values still agree on b bits with probability about
+ * 2^-b, so the fraction E of equal lanes is corrected:
+ * J = (E - 2^-b) / (1 - 2^-b).
+ *
+ * @author YAN DENG
+ *
+ */
+public class BBitMinHash {
+
+	private int b; // bits kept per min hash value
+	private int numPermutations;
+	private int lanesPerWord;
+	private int wordsPerRow;
+	private long[] highBits; // [word] top bit of every lane used in the word
+	private long[] lowerBits; // [word] the b-1 lower bits of every lane used
+	private long[] rows; // numDocuments * wordsPerRow words
+	private String[] docNames;
+	private HashMap<String, Integer> docIds; // doc name -> row
+
+	/**
+	 * Constructor, packs the lowest b bits of the signatures.
+	 *
+	 * @param minHashMatrix
+	 *            MinHash matrix of the document collection
+	 * @param docNames
+	 *            names of the documents, in the order of the matrix
+	 * @param b
+	 *            bits kept per min hash value, from 1 to 8
+	 */
+	public BBitMinHash(int[][] minHashMatrix, String[] docNames, int b) {
+		if (b < 1 || b > 8)
+			throw new IllegalArgumentException("b should range between 1 and 8.");
+		this.b = b;
+		this.numPermutations = minHashMatrix[0].length;
+		this.lanesPerWord = 64 / b;
+		this.wordsPerRow = (numPermutations + lanesPerWord - 1) / lanesPerWord;
+		this.highBits = new long[wordsPerRow];
+		this.lowerBits = new long[wordsPerRow];
+		for (int i = 0; i < numPermutations; i++) {
+			int shift = i % lanesPerWord * b;
+			highBits[i / lanesPerWord] |= 1L << (shift + b - 1);
+			lowerBits[i / lanesPerWord] |= ((1L << (b - 1)) - 1) << shift;
+		}
+		this.rows = new long[Math.multiplyExact(minHashMatrix.length, wordsPerRow)];
+		for (int doc = 0; doc < minHashMatrix.length; doc++) {
+			pack(minHashMatrix[doc], rows, doc * wordsPerRow);
+		}
+		this.docNames = docNames.clone();
+		this.docIds = new HashMap<String, Integer>();
+		for (int i = 0; i < docNames.length; i++) {
+			docIds.put(docNames[i], i);
+		}
+	}
+
+	/**
+	 * Keep the lowest b bits of every value of the signature.
+	 *
+	 * @param signature
+	 * @param words
+	 * @param offset
+	 *            first word of the row
+	 */
+	private void pack(int[] signature, long[] words, int offset) {
+		long mask = (1L << b) - 1;
+		for (int i = 0; i < numPermutations; i++) {
+			words[offset + i / lanesPerWord] |= (signature[i] & mask) << (i % lanesPerWord * b);
+		}
+	}
+
+	/**
+	 * Estimate the Jaccard similarity of the two documents from their b-bit
+	 * rows.
+	 *
+	 * @param file1
+	 * @param file2
+	 * @return the bias corrected estimate of the Jaccard similarity
+	 */
+	public double approximateJaccard(String file1, String file2) {
+		return approximateJaccard(fileOrder(file1), fileOrder(file2));
+	}
+
+	/**
+	 *
+	 * @param doc1
+	 *            index of the first document
+	 * @param doc2
+	 *            index of the second document
+	 * @return the bias corrected estimate of the Jaccard similarity
+	 */
+	public double approximateJaccard(int doc1, int doc2) {
+		return estimate(numPermutations - differences(doc1 * wordsPerRow, rows, doc2 * wordsPerRow));
+	}
+
+	/**
+	 * Estimate the Jaccard similarity of a signature that need not belong to
+	 * the collection, e.g. from MinHash.signatureOf, and a document.
+	 *
+	 * @param signature
+	 * @param doc
+	 *            index of the document
+	 * @return the bias corrected estimate of the Jaccard similarity
+	 */
+	public double approximateJaccard(int[] signature, int doc) {
+		long[] row = new long[wordsPerRow];
+		pack(signature, row, 0);
+		return estimate(numPermutations - differences(doc * wordsPerRow, row, 0));
+	}
+
+	/**
+	 *
+	 * @return Returns the number of lanes that differ between the row at
+	 *         offset1 in rows and the row at offset2 in words
+	 */
+	private int differences(int offset1, long[] words, int offset2) {
+		int differences = 0;
+		for (int w = 0; w < wordsPerRow; w++) {
+			long x = rows[offset1 + w] ^ words[offset2 + w];
+			long lower = lowerBits[w];
+			differences += Long.bitCount((((x & lower) + lower) | x) & highBits[w]);
+		}
+		return differences;
+	}
+
+	/**
+	 *
+	 * @param equal
+	 *            number of equal lanes
+	 * @return Returns (E - 2^-b) / (1 - 2^-b), at least 0
+	 */
+	private double estimate(int equal) {
+		double collision = 1.0 / (1 << b);
+		double fraction = (double) equal / numPermutations;
+		return Math.max(0, (fraction - collision) / (1 - collision));
+	}
+
+	/**
+	 *
+	 * @return Returns the number of bits kept per min hash value
+	 */
+	public int b() {
+		return b;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of bytes of one packed row
+	 */
+	public int rowSize() {
+		return 8 * wordsPerRow;
+	}
+
+	/**
+	 *
+	 * @return Returns the names of the documents, in the order of the rows
+	 */
+	public String[] allDocs() {
+		return docNames.clone();
+	}
+
+	/**
+	 * Return the index of the given file in the docNames array
+	 *
+	 * @param file
+	 * @return the index of the given file in the docNames array
+	 */
+	private int fileOrder(String file) {
+		Integer index = docIds.get(file);
+		if (index == null) {
+			throw new IllegalArgumentException("File " + file + " does not exist.");
+		}
+		return index;
+	}
+}
@@ -0,0 +1,163 @@
+package minhash;
+
+import java.util.Arrays;
+
+/**
+ * Hash table of one LSH band: maps the 64 bit key of a band to the ids of the
+ * documents in its bucket. Open addressing with linear probing over primitive
+ * arrays, so no object is allocated per document. The first document of a
+ * bucket is stored inline, the others in an int array created when the second
+ * one arrives.
+ *
+ * @author YAN DENG
+ *
+ */
+public class BandTable {
+
+	private long[] keys;
+	private int[] sizes; // number of documents in the bucket, 0 if the slot is
+							// empty
+	private int[] firsts; // first document of the bucket
+	private int[][] rests; // the other documents of the bucket
+	private int numBuckets;
+	private int mask;
+
+	/**
+	 * Constructor, sized for the given number of documents.
+	 *
+	 * @param expectedDocuments
+	 */
+	public BandTable(int expectedDocuments) {
+		int capacity = Integer.highestOneBit(Math.max(expectedDocuments, 4) * 2 - 1) << 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		sizes = new int[capacity];
+		firsts = new int[capacity];
+		rests = new int[capacity][];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Add the document to the bucket of the given key.
+	 *
+	 * @param key
+	 * @param doc
+	 */
+	public void add(long key, int doc) {
+		int slot = find(key);
+		if (sizes[slot] == 0) {
+			keys[slot] = key;
+			firsts[slot] = doc;
+			sizes[slot] = 1;
+			if (++numBuckets * 2 > keys.length) {
+				grow();
+			}
+			return;
+		}
+		int size = sizes[slot];
+		int[] rest = rests[slot];
+		if (rest == null) {
+			rest = new int[2];
+		} else if (rest.length == size - 1) {
+			rest = Arrays.copyOf(rest, 2 * rest.length);
+		}
+		rest[size - 1] = doc;
+		rests[slot] = rest;
+		sizes[slot] = size + 1;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return Returns the slot of the bucket of the given key, or -1 if no
+	 *         document has this key
+	 */
+	public int bucket(long key) {
+		int slot = find(key);
+		return sizes[slot] == 0 ? -1 : slot;
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return Returns the number of documents in the bucket at the given slot,
+	 *         0 if the slot is empty
+	 */
+	public int bucketSize(int slot) {
+		return sizes[slot];
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @param i
+	 *            between [0,bucketSize(slot)-1]
+	 * @return Returns the i'th document of the bucket at the given slot
+	 */
+	public int doc(int slot, int i) {
+		return i == 0 ? firsts[slot] : rests[slot][i - 1];
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return Returns the key of the bucket at the given slot
+	 */
+	public long key(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 *
+	 * @return Returns the number of slots; buckets are the slots with
+	 *         bucketSize > 0
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of non-empty buckets
+	 */
+	public int numBuckets() {
+		return numBuckets;
+	}
+
+	/**
+	 * Linear probing from the mixed key.
+	 *
+	 * @return Returns the slot holding the key, or the empty slot it would be
+	 *         put in
+	 */
+	private int find(long key) {
+		int slot = (int) Helper.mix64(key) & mask;
+		while (sizes[slot] != 0 && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Double the capacity and move every bucket to its new slot.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldSizes = sizes;
+		int[] oldFirsts = firsts;
+		int[][] oldRests = rests;
+		allocate(2 * oldKeys.length);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldSizes[i] == 0)
+				continue;
+			int slot = find(oldKeys[i]);
+			keys[slot] = oldKeys[i];
+			sizes[slot] = oldSizes[i];
+			firsts[slot] = oldFirsts[i];
+			rests[slot] = oldRests[i];
+		}
+	}
+}
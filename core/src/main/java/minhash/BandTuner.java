@@ -0,0 +1,211 @@
+package minhash;
+
+import java.util.Random;
+
+/**
+ * Chooses the number of bands of an LSH index from the signatures
+ * themselves, instead of from the threshold formula (1/b)^(1/r) alone.
+ *
+ * A sample of rows is scored against every other row of the matrix, which
+ * gives the distribution of the number of equal values over the pairs of the
+ * collection. A pair with e equal values out of K collides in a band of r
+ * rows with probability C(e,r)/C(K,r), since the equal positions are spread
+ * at random, and becomes a candidate with probability 1-(1-C(e,r)/C(K,r))^b.
+ * From this, for every number of bands b (with r = K/b rows, as LSH uses):
+ *
+ * <pre>
+ * candidates      = sum over the pairs of P(candidate)
+ * false negatives = share of the pairs at or above the threshold
+ *                   that are not candidates
+ * cost            = n*b*(r + TABLE_ENTRY_COST)   building the b tables
+ *                 + candidates*K                 verifying the candidates
+ * </pre>
+ *
+ * counted in values touched. The tuner picks the cheapest b whose false
+ * negatives stay within the budget. If the sample holds no pair at or above
+ * the threshold, a pair exactly at the threshold stands in for them.
+ *
+ * @author YAN DENG
+ *
+ */
+public class BandTuner {
+
+	private static final int TABLE_ENTRY_COST = 16; // an insertion into a
+													// band table, in values
+
+	private int numPermutations; // K
+	private int numDocuments;
+	private int numSampleRows;
+	private long numSamplePairs;
+	private long[] pairs; // [e] sampled pairs with e equal values
+
+	/**
+	 * Constructor, samples the similarity distribution of the matrix.
+	 *
+	 * @param minHashMatrix
+	 * @param sampleRows
+	 *            number of rows scored against all others
+	 * @param seed
+	 *            seed of the choice of the rows
+	 */
+	public BandTuner(SignatureMatrix minHashMatrix, int sampleRows, long seed) {
+		if (sampleRows < 1)
+			throw new IllegalArgumentException("Number of sample rows should be greater or equal to 1.");
+		this.numPermutations = minHashMatrix.numPermutations();
+		this.numDocuments = minHashMatrix.numRows();
+		this.pairs = new long[numPermutations + 1];
+		if (numDocuments < 2)
+			return;
+		this.numSampleRows = Math.min(sampleRows, numDocuments);
+		Random rand = new Random(seed);
+		int[] rows = new int[numDocuments];
+		for (int i = 0; i < numDocuments; i++) {
+			rows[i] = i;
+		}
+		double[] similarities = new double[numDocuments];
+		for (int s = 0; s < numSampleRows; s++) {
+			// partial Fisher-Yates shuffle, so that the sampled rows are distinct
+			int pick = s + rand.nextInt(numDocuments - s);
+			int row = rows[pick];
+			rows[pick] = rows[s];
+			rows[s] = row;
+			minHashMatrix.approximateJaccard(row, 0, numDocuments, similarities);
+			for (int j = 0; j < numDocuments; j++) {
+				if (j != row)
+					pairs[(int) Math.round(similarities[j] * numPermutations)]++;
+			}
+			numSamplePairs += numDocuments - 1;
+		}
+	}
+
+	/**
+	 * Choose the number of bands.
+	 *
+	 * @param threshold
+	 *            similarity threshold of near duplicates
+	 * @param falseNegatives
+	 *            largest expected share of the pairs at or above the threshold
+	 *            that may be missed
+	 * @return Returns the cheapest number of bands within the budget, or K
+	 *         (one row per band) if none is
+	 */
+	public int tune(double threshold, double falseNegatives) {
+		if (threshold < 0 || threshold > 1)
+			throw new IllegalArgumentException("threshold should range between 0 and 1");
+		if (falseNegatives < 0 || falseNegatives >= 1)
+			throw new IllegalArgumentException("False negative budget should range between 0 and 1");
+		int best = numPermutations;
+		double bestCost = Double.MAX_VALUE;
+		for (int bands = 1; bands <= numPermutations; bands++) {
+			if (falseNegatives(bands, threshold) > falseNegatives)
+				continue;
+			double cost = cost(bands);
+			if (cost < bestCost) {
+				best = bands;
+				bestCost = cost;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 *
+	 * @param equalities
+	 *            number of equal values of a pair
+	 * @param bands
+	 * @return Returns the probability that the pair shares a bucket in at least
+	 *         one of the bands
+	 */
+	public double collisionProbability(int equalities, int bands) {
+		int r = numPermutations / bands;
+		double band = 1; // C(e,r)/C(K,r)
+		for (int j = 0; j < r; j++) {
+			band *= (double) Math.max(0, equalities - j) / (numPermutations - j);
+		}
+		return 1 - Math.pow(1 - band, bands);
+	}
+
+	/**
+	 *
+	 * @param bands
+	 * @return Returns the expected number of candidate pairs of the collection
+	 */
+	public double predictedCandidates(int bands) {
+		if (numSamplePairs == 0)
+			return 0;
+		double sum = 0;
+		for (int e = 0; e <= numPermutations; e++) {
+			if (pairs[e] > 0)
+				sum += pairs[e] * collisionProbability(e, bands);
+		}
+		return sum / numSamplePairs * numPairs();
+	}
+
+	/**
+	 *
+	 * @param bands
+	 * @param threshold
+	 * @return Returns the expected share of the pairs at or above the
+	 *         threshold that are not candidates
+	 */
+	public double falseNegatives(int bands, double threshold) {
+		int minimum = (int) Math.ceil(threshold * numPermutations - 1e-9);
+		long above = 0;
+		double missed = 0;
+		for (int e = minimum; e <= numPermutations; e++) {
+			above += pairs[e];
+			missed += pairs[e] * (1 - collisionProbability(e, bands));
+		}
+		if (above == 0)
+			return 1 - collisionProbability(minimum, bands);
+		return missed / above;
+	}
+
+	/**
+	 *
+	 * @param threshold
+	 * @return Returns the expected number of pairs of the collection at or
+	 *         above the threshold
+	 */
+	public double predictedPairs(double threshold) {
+		if (numSamplePairs == 0)
+			return 0;
+		int minimum = (int) Math.ceil(threshold * numPermutations - 1e-9);
+		long above = 0;
+		for (int e = minimum; e <= numPermutations; e++) {
+			above += pairs[e];
+		}
+		return (double) above / numSamplePairs * numPairs();
+	}
+
+	/**
+	 *
+	 * @param bands
+	 * @return Returns the expected cost of the index and of verifying its
+	 *         candidates, in values touched
+	 */
+	public double cost(int bands) {
+		int r = numPermutations / bands;
+		return (double) numDocuments * bands * (r + TABLE_ENTRY_COST) + predictedCandidates(bands) * numPermutations;
+	}
+
+	private double numPairs() {
+		return (double) numDocuments * (numDocuments - 1) / 2;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of sampled pairs
+	 */
+	public long numSamplePairs() {
+		return numSamplePairs;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of rows scored against all others
+	 */
+	public int numSampleRows() {
+		return numSampleRows;
+	}
+}
@@ -0,0 +1,454 @@
+package minhash;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads a document collection exactly once. Every file is tokenized a single
+ * time by a Tokenizer, the terms (single words or shingles, see Tokenizer)
+ * are given int ids by their fingerprints,
+ * without keeping their Strings, and each document is kept as its sorted,
+ * non-repeated term ids, delta and varint encoded in one buffer. The buffer
+ * lives in memory, or is spilled to a file and memory mapped when a spill file
+ * is given. Documents added later are appended to an in-memory buffer, their
+ * new terms get the next free ids, so the ids of existing terms never change.
+ *
+ * Besides its id, every term has a 64 bit fingerprint hashed from its UTF-8
+ * bytes only, which the MinHash hash functions are applied to, so signatures
+ * do not depend on the vocabulary.
+ *
+ * @author YAN DENG
+ *
+ */
+public class Corpus {
+
+	private String folderName;
+	private String[] docNames;
+	private TermDictionary terms; // fingerprint -> id, ids range between
+									// [0,numTerms-1]
+	private Tokenizer tokenizer;
+	private int numDocuments;
+	private int[] termCounts; // number of terms of each document
+	private int[] offsets; // start of each document in the encoded buffer,
+							// documents from encodedSize on are in appended
+	private ByteBuffer encoded;
+	private int encodedSize;
+	private byte[] appended; // documents added after construction
+	private int appendedSize;
+	private int filesRead;
+	private long bytesRead;
+	private long readNanos; // time spent reading and tokenizing
+
+	private static final Metrics.Timer INGEST = Metrics.global().timer(Metrics.INGEST);
+	private static final Metrics.Timer VOCABULARY = Metrics.global().timer(Metrics.VOCABULARY);
+	private static final Metrics.Counter DOCUMENTS = Metrics.global().counter(Metrics.DOCUMENTS);
+	private static final Metrics.Counter TOKENS = Metrics.global().counter(Metrics.TOKENS);
+	private static final Metrics.Counter BYTES_READ = Metrics.global().counter(Metrics.BYTES_READ);
+
+	/**
+	 * Constructor, reads the given folder and keeps the encoded documents in
+	 * memory.
+	 *
+	 * @param folder
+	 *            The name of a folder containing the document collection
+	 */
+	public Corpus(String folder) {
+		this(folder, null);
+	}
+
+	/**
+	 * Constructor, reads the given folder.
+	 *
+	 * @param folder
+	 *            The name of a folder containing the document collection
+	 * @param spillFile
+	 *            file the encoded documents are written to and mapped from,
+	 *            null to keep them in memory
+	 */
+	public Corpus(String folder, File spillFile) {
+		this(folder, spillFile, Tokenizer.Shingles.WORD, 1);
+	}
+
+	/**
+	 * Constructor, reads the given folder and takes shingles of the given size
+	 * as the terms of the documents.
+	 *
+	 * @param folder
+	 *            The name of a folder containing the document collection
+	 * @param spillFile
+	 *            file the encoded documents are written to and mapped from,
+	 *            null to keep them in memory
+	 * @param shingles
+	 *            word or character shingles
+	 * @param shingleSize
+	 *            number of terms or characters of a shingle
+	 */
+	public Corpus(String folder, File spillFile, Tokenizer.Shingles shingles, int shingleSize) {
+		this.folderName = folder;
+		File[] files = new File(folder).listFiles();
+		if (files == null || files.length == 0)
+			throw new IllegalArgumentException("The folder is empty.");
+		this.docNames = new String[files.length];
+		for (int i = 0; i < files.length; i++) {
+			docNames[i] = files[i].getName();
+		}
+		this.numDocuments = files.length;
+		this.terms = new TermDictionary();
+		this.tokenizer = new Tokenizer(shingles, shingleSize);
+		this.termCounts = new int[numDocuments];
+		this.offsets = new int[numDocuments + 1];
+		this.appended = new byte[1024];
+		try {
+			if (spillFile == null) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				ingest(out);
+				this.encoded = ByteBuffer.wrap(out.toByteArray());
+			} else {
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(spillFile));
+				ingest(out);
+				out.close();
+				RandomAccessFile raf = new RandomAccessFile(spillFile, "r");
+				this.encoded = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not store the documents of " + folder, e);
+		}
+	}
+
+	/**
+	 * Tokenize every document once and write its encoded term ids to out.
+	 *
+	 * @param out
+	 * @throws IOException
+	 */
+	private void ingest(OutputStream out) throws IOException {
+		int position = 0;
+		for (int i = 0; i < numDocuments; i++) {
+			offsets[i] = position;
+			if (docNames[i].equals(".DS_Store"))
+				continue;
+			int[] ids = readFile(new File(folderName + "/" + docNames[i]));
+			termCounts[i] = ids.length;
+			position += encode(ids, out);
+			if (position < 0)
+				throw new IllegalStateException("Encoded documents exceed 2GB.");
+		}
+		offsets[numDocuments] = position;
+		encodedSize = position;
+	}
+
+	/**
+	 * Write the sorted term ids as varints of their deltas.
+	 *
+	 * @param ids
+	 * @param out
+	 * @return Returns the number of bytes written
+	 * @throws IOException
+	 */
+	private static int encode(int[] ids, OutputStream out) throws IOException {
+		byte[] varint = new byte[5];
+		int size = 0;
+		int previous = 0;
+		for (int id : ids) {
+			int delta = id - previous;
+			previous = id;
+			int length = 0;
+			while ((delta & ~0x7F) != 0) {
+				varint[length++] = (byte) ((delta & 0x7F) | 0x80);
+				delta >>>= 7;
+			}
+			varint[length++] = (byte) delta;
+			out.write(varint, 0, length);
+			size += length;
+		}
+		return size;
+	}
+
+	/**
+	 * Read, tokenize and append a document to the collection.
+	 *
+	 * @param file
+	 * @return Returns the index of the new document
+	 * @throws UncheckedIOException
+	 *             if the file can not be read, the collection is unchanged
+	 */
+	public int addDocument(File file) {
+		if (file.getName().equals(".DS_Store"))
+			throw new IllegalArgumentException("File " + file.getName() + " can not be added.");
+		int[] ids = readFile(file);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			encode(ids, out);
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // not thrown by a byte array
+		}
+		if (numDocuments + 1 >= offsets.length) {
+			int capacity = 2 * offsets.length;
+			docNames = Arrays.copyOf(docNames, capacity);
+			termCounts = Arrays.copyOf(termCounts, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+		}
+		if (appendedSize + out.size() > appended.length) {
+			appended = Arrays.copyOf(appended, Math.max(2 * appended.length, appendedSize + out.size()));
+		}
+		System.arraycopy(out.toByteArray(), 0, appended, appendedSize, out.size());
+		int doc = numDocuments++;
+		docNames[doc] = file.getName();
+		termCounts[doc] = ids.length;
+		offsets[doc] = encodedSize + appendedSize;
+		appendedSize += out.size();
+		offsets[numDocuments] = encodedSize + appendedSize;
+		return doc;
+	}
+
+	/**
+	 * Tokenize the given file and give every new term the next free id. The
+	 * tokenizing is timed as the ingest phase, the ids as the vocabulary
+	 * phase.
+	 *
+	 * @param file
+	 * @return Returns the sorted, non-repeated term ids of the file
+	 * @throws UncheckedIOException
+	 *             if the file can not be read, rather than making it an empty
+	 *             document
+	 */
+	private int[] readFile(File file) {
+		long start = INGEST.start();
+		int count;
+		try {
+			count = tokenizer.tokenize(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read " + file, e);
+		}
+		long tokenized = INGEST.stop(start);
+		long[] hashes = tokenizer.hashes();
+		int[] ids = new int[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = terms.id(hashes[i]);
+		}
+		long length = file.length();
+		filesRead++;
+		bytesRead += length;
+		DOCUMENTS.increment();
+		TOKENS.add(count);
+		BYTES_READ.add(length);
+		Arrays.sort(ids);
+		int distinct = 0;
+		for (int i = 0; i < ids.length; i++) {
+			if (i == 0 || ids[i] != ids[i - 1])
+				ids[distinct++] = ids[i];
+		}
+		readNanos += VOCABULARY.stop(tokenized) - start;
+		// System.out.println("File: " + file.getName() + ", terms: " +
+		// distinct);
+		return Arrays.copyOf(ids, distinct);
+	}
+
+	/**
+	 * Tokenize a text like the documents of the collection, with the same
+	 * shingles.
+	 *
+	 * @param text
+	 * @return Returns the sorted fingerprints of the distinct features of the
+	 *         text
+	 */
+	public long[] termHashes(String text) {
+		return new Tokenizer(tokenizer.shingles(), tokenizer.shingleSize()).fingerprints(text);
+	}
+
+	/**
+	 * Decode the term ids of the given document.
+	 *
+	 * @param doc
+	 *            index of the document in the docNames array
+	 * @return Returns the sorted, non-repeated term ids of the document
+	 */
+	public int[] terms(int doc) {
+		int[] ids = new int[termCounts[doc]];
+		int position = offsets[doc];
+		boolean isAppended = position >= encodedSize;
+		position -= isAppended ? encodedSize : 0;
+		int previous = 0;
+		for (int j = 0; j < ids.length; j++) {
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = isAppended ? appended[position++] : encoded.get(position++);
+				delta |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			previous += delta;
+			ids[j] = previous;
+		}
+		return ids;
+	}
+
+	/**
+	 * Drop the documents not kept: the remaining ones are renumbered in their
+	 * order and the bytes of the dropped ones are freed. Documents in a spill
+	 * file stay where they are, since the mapping can not shrink, only the
+	 * ones appended after construction are moved; in memory every document is
+	 * moved into one new buffer.
+	 *
+	 * @param keep
+	 *            whether to keep each document
+	 */
+	public void compact(boolean[] keep) {
+		if (keep.length != numDocuments)
+			throw new IllegalArgumentException("There should be one flag per document.");
+		int base = encoded.hasArray() ? 0 : encodedSize; // bytes left in place
+		int count = 0;
+		int size = 0;
+		for (int i = 0; i < numDocuments; i++) {
+			if (!keep[i])
+				continue;
+			count++;
+			if (offsets[i] >= base)
+				size += offsets[i + 1] - offsets[i];
+		}
+		String[] names = new String[count];
+		int[] counts = new int[count];
+		int[] starts = new int[count + 1];
+		byte[] bytes = new byte[Math.max(1024, size)];
+		int moved = 0;
+		count = 0;
+		for (int i = 0; i < numDocuments; i++) {
+			if (!keep[i])
+				continue;
+			names[count] = docNames[i];
+			counts[count] = termCounts[i];
+			int length = offsets[i + 1] - offsets[i];
+			if (offsets[i] < base) {
+				starts[count] = offsets[i];
+			} else {
+				if (offsets[i] >= encodedSize) {
+					System.arraycopy(appended, offsets[i] - encodedSize, bytes, moved, length);
+				} else {
+					ByteBuffer document = encoded.duplicate();
+					document.position(offsets[i]);
+					document.get(bytes, moved, length);
+				}
+				starts[count] = base + moved;
+				moved += length;
+			}
+			count++;
+		}
+		starts[count] = base + moved;
+		if (base == 0)
+			this.encoded = ByteBuffer.wrap(new byte[0]);
+		this.encodedSize = base;
+		this.appended = bytes;
+		this.appendedSize = moved;
+		this.docNames = names;
+		this.termCounts = counts;
+		this.offsets = starts;
+		this.numDocuments = count;
+	}
+
+	/**
+	 *
+	 * @return Returns the names of the documents, in the order of their
+	 *         indexes
+	 */
+	public String[] docNames() {
+		return Arrays.copyOf(docNames, numDocuments);
+	}
+
+	/**
+	 *
+	 * @param doc
+	 * @return Returns the name of the given document
+	 */
+	public String docName(int doc) {
+		return docNames[doc];
+	}
+
+	/**
+	 *
+	 * @return Returns the number of documents, including .DS_Store
+	 */
+	public int numDocuments() {
+		return numDocuments;
+	}
+
+	/**
+	 *
+	 * @param termId
+	 * @return Returns the 64 bit fingerprint of the term, which only depends
+	 *         on the term itself
+	 */
+	public long termHash(int termId) {
+		return terms.fingerprint(termId);
+	}
+
+	/**
+	 *
+	 * @return Returns what the shingles of the documents are made of
+	 */
+	public Tokenizer.Shingles shingles() {
+		return tokenizer.shingles();
+	}
+
+	/**
+	 *
+	 * @return Returns the number of terms or characters of a shingle
+	 */
+	public int shingleSize() {
+		return tokenizer.shingleSize();
+	}
+
+	/**
+	 *
+	 * @return Returns the number of terms in the document collection
+	 */
+	public int numTerms() {
+		return terms.size();
+	}
+
+	/**
+	 *
+	 * @return Returns the number of files read, one per document other than
+	 *         .DS_Store, which is never read; documents dropped by compact
+	 *         stay counted
+	 */
+	public int filesRead() {
+		return filesRead;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of bytes read while ingesting
+	 */
+	public long bytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of megabytes (2^20 bytes) read and tokenized
+	 *         per second
+	 */
+	public double throughput() {
+		return readNanos == 0 ? 0 : bytesRead / (1024.0 * 1024.0) / (readNanos / 1e9);
+	}
+
+	/**
+	 *
+	 * @return Returns the size of the encoded documents in bytes
+	 */
+	public int encodedSize() {
+		return encodedSize + appendedSize;
+	}
+}
@@ -0,0 +1,140 @@
+package minhash;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dedupes a whole document collection: every candidate pair of the LSH
+ * buckets is verified against the similarity threshold with the MinHash
+ * signatures, and the verified pairs are grouped into duplicate clusters with
+ * union-find. Only the union-find forest is kept, never the pairs.
+ *
+ * @author YAN DENG
+ *
+ */
+public class DuplicateClusters {
+
+	private int[] parents; // union-find forest over the documents
+	private AtomicLong numCandidates = new AtomicLong();
+	private AtomicLong numDuplicates = new AtomicLong();
+
+	private static final Metrics.Timer VERIFY = Metrics.global().timer(Metrics.VERIFY);
+
+	/**
+	 * Constructor, verifies every candidate pair of the LSH index and merges
+	 * the clusters of the pairs reaching the threshold. The whole walk is
+	 * timed as one verify.
+	 *
+	 * @param lsh
+	 *            LSH index of the collection
+	 * @param minHashMatrix
+	 *            MinHash matrix the index was built from
+	 * @param threshold
+	 *            similarity threshold of near duplicates
+	 * @param parallelism
+	 *            number of threads verifying the pairs
+	 */
+	public DuplicateClusters(LSH lsh, final SignatureMatrix minHashMatrix, final double threshold, int parallelism) {
+		this.parents = new int[minHashMatrix.numRows()];
+		for (int i = 0; i < parents.length; i++) {
+			parents[i] = i;
+		}
+		long start = VERIFY.start();
+		lsh.forEachCandidatePair(new LSH.PairVisitor() {
+			public void pair(int doc1, int doc2) {
+				numCandidates.incrementAndGet();
+				if (minHashMatrix.approximateJaccard(doc1, doc2) >= threshold) {
+					numDuplicates.incrementAndGet();
+					union(doc1, doc2);
+				}
+			}
+		}, parallelism);
+		VERIFY.stop(start);
+	}
+
+	/**
+	 * Merge the clusters of the two documents.
+	 */
+	private synchronized void union(int doc1, int doc2) {
+		int root1 = find(doc1);
+		int root2 = find(doc2);
+		if (root1 < root2) {
+			parents[root2] = root1;
+		} else if (root2 < root1) {
+			parents[root1] = root2;
+		}
+	}
+
+	/**
+	 * Find the root of the document's cluster, halving the path on the way.
+	 */
+	private int find(int doc) {
+		while (parents[doc] != doc) {
+			parents[doc] = parents[parents[doc]];
+			doc = parents[doc];
+		}
+		return doc;
+	}
+
+	/**
+	 * Write every cluster of at least two documents as one line of
+	 * tab-separated document names. The documents are grouped by their root
+	 * with a counting sort, so the clusters stream to the file in the order of
+	 * their smallest document.
+	 *
+	 * @param file
+	 * @param docNames
+	 *            names of the documents, in the order of the MinHash matrix
+	 * @return Returns the number of clusters written
+	 * @throws FileNotFoundException
+	 */
+	public synchronized int write(File file, String[] docNames) throws FileNotFoundException {
+		int n = parents.length;
+		int[] starts = new int[n + 1];
+		for (int i = 0; i < n; i++) {
+			starts[find(i) + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			starts[i + 1] += starts[i];
+		}
+		int[] members = new int[n];
+		int[] fill = new int[n];
+		for (int i = 0; i < n; i++) {
+			int root = find(i);
+			members[starts[root] + fill[root]++] = i;
+		}
+		PrintWriter writer = new PrintWriter(file);
+		int numClusters = 0;
+		for (int root = 0; root < n; root++) {
+			if (starts[root + 1] - starts[root] < 2)
+				continue;
+			numClusters++;
+			for (int m = starts[root]; m < starts[root + 1]; m++) {
+				if (m > starts[root])
+					writer.print('\t');
+				writer.print(docNames[members[m]]);
+			}
+			writer.println();
+		}
+		writer.close();
+		return numClusters;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of candidate pairs verified
+	 */
+	public long numCandidates() {
+		return numCandidates.get();
+	}
+
+	/**
+	 *
+	 * @return Returns the number of candidate pairs reaching the threshold
+	 */
+	public long numDuplicates() {
+		return numDuplicates.get();
+	}
+}
@@ -0,0 +1,132 @@
+package minhash;
+
+import java.nio.IntBuffer;
+
+/**
+ * Counts the positions at which two runs of min hash values are equal, the
+ * inner loop of every signature comparison.
+ *
+ * This class is the scalar implementation. instance() returns the
+ * VectorEqualityCounter instead when it can be loaded: it compares a whole
+ * vector of lanes at once with the Vector API, which is an incubator module,
+ * so the class is compiled separately (see the README) and is only usable
+ * when the JVM runs with --add-modules jdk.incubator.vector. Otherwise, or
+ * with -Dminhash.vector=false, this class is used.
+ *
+ * @author YAN DENG
+ *
+ */
+public class EqualityCounter {
+
+	private static final EqualityCounter INSTANCE = load();
+
+	/**
+	 *
+	 * @return Returns the fastest counter available to this JVM
+	 */
+	public static EqualityCounter instance() {
+		return INSTANCE;
+	}
+
+	private static EqualityCounter load() {
+		if (!Boolean.parseBoolean(System.getProperty("minhash.vector", "true")))
+			return new EqualityCounter();
+		try {
+			return (EqualityCounter) Class.forName("minhash.VectorEqualityCounter").getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			return new EqualityCounter(); // not compiled
+		} catch (LinkageError e) {
+			return new EqualityCounter(); // the module is not added
+		}
+	}
+
+	/**
+	 *
+	 * @param values1
+	 * @param offset1
+	 *            first value of the first run
+	 * @param values2
+	 * @param offset2
+	 *            first value of the second run
+	 * @param length
+	 *            number of values of a run
+	 * @return Returns the number of positions i with values1[offset1+i] ==
+	 *         values2[offset2+i]
+	 */
+	public int count(int[] values1, int offset1, int[] values2, int offset2, int length) {
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			int difference = values1[offset1 + i] ^ values2[offset2 + i];
+			count += ((difference | -difference) >>> 31) ^ 1; // 1 iff equal, no branch
+		}
+		return count;
+	}
+
+	/**
+	 * Count the equal positions of two runs read in place from buffers, e.g.
+	 * the memory mapped signatures of a SignatureStore, without copying them
+	 * to arrays. The Vector API of the JDKs the vector counter is compiled
+	 * for has no load from an IntBuffer that works on all of them, so runs in
+	 * buffers are always compared with this scalar loop.
+	 *
+	 * @param values1
+	 * @param offset1
+	 *            first value of the first run
+	 * @param values2
+	 * @param offset2
+	 *            first value of the second run
+	 * @param length
+	 *            number of values of a run
+	 * @return Returns the number of positions i with values1.get(offset1+i)
+	 *         == values2.get(offset2+i)
+	 */
+	public final int count(IntBuffer values1, int offset1, IntBuffer values2, int offset2, int length) {
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			int difference = values1.get(offset1 + i) ^ values2.get(offset2 + i);
+			count += ((difference | -difference) >>> 31) ^ 1; // 1 iff equal, no branch
+		}
+		return count;
+	}
+
+	/**
+	 * Count the equal positions of one run against consecutive runs of the
+	 * same length, e.g. a query signature against a block of rows. This
+	 * compares the runs one by one; VectorEqualityCounter compares the query
+	 * with several runs per load of its lanes.
+	 *
+	 * @param query
+	 * @param queryOffset
+	 *            first value of the query run
+	 * @param values
+	 * @param offset
+	 *            first value of the first run to compare with
+	 * @param numRuns
+	 *            number of runs to compare with, stored one after the other
+	 * @param length
+	 *            number of values of a run
+	 * @param counts
+	 *            receives the count of run j at counts[j]
+	 */
+	public void count(int[] query, int queryOffset, int[] values, int offset, int numRuns, int length, int[] counts) {
+		for (int j = 0; j < numRuns; j++) {
+			counts[j] = count(query, queryOffset, values, offset + j * length, length);
+		}
+	}
+
+	/**
+	 *
+	 * @return Returns true if the counter compares vectors of lanes
+	 */
+	public boolean vectorized() {
+		return false;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of values compared at once
+	 */
+	public int lanes() {
+		return 1;
+	}
+}
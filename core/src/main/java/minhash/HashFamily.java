@@ -0,0 +1,319 @@
+package minhash;
+
+import java.util.Random;
+
+/**
+ * A family of k hash functions of the 64 bit term fingerprints, drawn from a
+ * seed so that the same kind, size and seed always give the same functions.
+ * Every function maps a fingerprint to 32 bits, returned as a long in
+ * [0,2^32), and MinHash keeps the smallest value of each function.
+ *
+ * @author YAN DENG
+ *
+ */
+public abstract class HashFamily {
+
+	/**
+	 * The implemented families.
+	 */
+	public enum Kind {
+		/**
+		 * (a*x+b) mod 2^61-1, upper 32 of the 61 bits: 2-universal, one 128
+		 * bit multiplication per hash
+		 */
+		MERSENNE,
+		/**
+		 * (a*x_low+c*x_high+b) >>> 32 over the two 32 bit halves of x:
+		 * strongly universal, two 64 bit multiplications and no modulo
+		 */
+		MULTIPLY_SHIFT,
+		/**
+		 * XOR of 8 random table entries, one per byte of x: 3-independent,
+		 * 8 lookups in 8KB of tables per function
+		 */
+		TABULATION,
+		/**
+		 * the MurmurHash3 finalizer of x XOR a random key: not universal in
+		 * theory, fast and well mixed in practice
+		 */
+		MURMUR
+	}
+
+	private static final long MERSENNE_PRIME = (1L << 61) - 1;
+	private static final long MASK_32 = 0xffffffffL;
+
+	protected final int size;
+	protected final long seed;
+
+	protected HashFamily(int size, long seed) {
+		if (size < 1)
+			throw new IllegalArgumentException("Number of hash functions should be greater or equal to 1.");
+		this.size = size;
+		this.seed = seed;
+	}
+
+	/**
+	 * Draw a family of the given kind from the seed.
+	 *
+	 * @param kind
+	 * @param size
+	 *            number of hash functions
+	 * @param seed
+	 * @return Returns the hash family
+	 */
+	public static HashFamily create(Kind kind, int size, long seed) {
+		switch (kind) {
+		case MERSENNE:
+			return new Mersenne(size, seed);
+		case MULTIPLY_SHIFT:
+			return new MultiplyShift(size, seed);
+		case TABULATION:
+			return new Tabulation(size, seed);
+		case MURMUR:
+			return new Murmur(size, seed);
+		default:
+			throw new IllegalArgumentException("Unknown hash family " + kind + ".");
+		}
+	}
+
+	/**
+	 *
+	 * @param function
+	 *            index of the hash function, in [0,size-1]
+	 * @param x
+	 *            fingerprint of a term
+	 * @return Returns the 32 bit hash of x by the given function
+	 */
+	public abstract long hash(int function, long x);
+
+	/**
+	 * Hash x with every function and lower the minimums it beats. One call
+	 * per term lets each family run its own tight loop over the functions.
+	 *
+	 * @param x
+	 *            fingerprint of a term
+	 * @param minimums
+	 *            the smallest hash of each function so far
+	 */
+	public abstract void minimize(long x, long[] minimums);
+
+	/**
+	 *
+	 * @return Returns the kind of the family
+	 */
+	public abstract Kind kind();
+
+	/**
+	 *
+	 * @return Returns the number of hash functions
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @return Returns the seed the functions are drawn from
+	 */
+	public long seed() {
+		return seed;
+	}
+
+	/**
+	 * (a*x+b) mod 2^61-1, x is the fingerprint mod 2^61-1.
+	 */
+	private static class Mersenne extends HashFamily {
+		private long[] a;
+		private long[] b;
+
+		Mersenne(int size, long seed) {
+			super(size, seed);
+			Random rand = new Random(seed);
+			a = new long[size];
+			b = new long[size];
+			for (int i = 0; i < size; i++) {
+				a[i] = Math.floorMod(rand.nextLong(), MERSENNE_PRIME - 1) + 1; // Generate
+																				// a;
+				b[i] = Math.floorMod(rand.nextLong(), MERSENNE_PRIME); // Generate
+																		// b;
+			}
+		}
+
+		@Override
+		public long hash(int function, long x) {
+			return modMersenne(multiplyMod(a[function], modMersenne(x)) + b[function]) >>> 29;
+		}
+
+		@Override
+		public void minimize(long x, long[] minimums) {
+			x = modMersenne(x);
+			for (int i = 0; i < size; i++) {
+				long hash = modMersenne(multiplyMod(a[i], x) + b[i]) >>> 29;
+				if (hash < minimums[i]) {
+					minimums[i] = hash;
+				}
+			}
+		}
+
+		@Override
+		public Kind kind() {
+			return Kind.MERSENNE;
+		}
+
+		/**
+		 *
+		 * @param a
+		 *            less than 2^61-1
+		 * @param x
+		 *            less than 2^61-1
+		 * @return Returns a*x mod 2^61-1, from the 122 bit product
+		 */
+		private static long multiplyMod(long a, long x) {
+			long low = a * x;
+			long high = Math.multiplyHigh(a, x);
+			return modMersenne((low & MERSENNE_PRIME) + ((low >>> 61) | (high << 3)));
+		}
+
+		/**
+		 *
+		 * @param x
+		 * @return Returns x mod 2^61-1, for x treated as unsigned
+		 */
+		private static long modMersenne(long x) {
+			x = (x & MERSENNE_PRIME) + (x >>> 61);
+			return x >= MERSENNE_PRIME ? x - MERSENNE_PRIME : x;
+		}
+	}
+
+	/**
+	 * Vector multiply-shift over the two 32 bit halves of x.
+	 */
+	private static class MultiplyShift extends HashFamily {
+		private long[] a;
+		private long[] c;
+		private long[] b;
+
+		MultiplyShift(int size, long seed) {
+			super(size, seed);
+			Random rand = new Random(seed);
+			a = new long[size];
+			c = new long[size];
+			b = new long[size];
+			for (int i = 0; i < size; i++) {
+				a[i] = rand.nextLong();
+				c[i] = rand.nextLong();
+				b[i] = rand.nextLong();
+			}
+		}
+
+		@Override
+		public long hash(int function, long x) {
+			return (a[function] * (x & MASK_32) + c[function] * (x >>> 32) + b[function]) >>> 32;
+		}
+
+		@Override
+		public void minimize(long x, long[] minimums) {
+			long low = x & MASK_32;
+			long high = x >>> 32;
+			for (int i = 0; i < size; i++) {
+				long hash = (a[i] * low + c[i] * high + b[i]) >>> 32;
+				if (hash < minimums[i]) {
+					minimums[i] = hash;
+				}
+			}
+		}
+
+		@Override
+		public Kind kind() {
+			return Kind.MULTIPLY_SHIFT;
+		}
+	}
+
+	/**
+	 * Simple tabulation: 8 tables of 256 random ints per function. The entry
+	 * of function i for byte value v at byte position j is at
+	 * (j*256+v)*size+i, so the entries one key needs for all functions are 8
+	 * contiguous runs.
+	 */
+	private static class Tabulation extends HashFamily {
+		private int[] tables;
+
+		Tabulation(int size, long seed) {
+			super(size, seed);
+			Random rand = new Random(seed);
+			tables = new int[2048 * size];
+			for (int i = 0; i < tables.length; i++) {
+				tables[i] = rand.nextInt();
+			}
+		}
+
+		@Override
+		public long hash(int function, long x) {
+			int hash = 0;
+			for (int j = 0; j < 8; j++) {
+				hash ^= tables[((j << 8) + (int) ((x >>> (j << 3)) & 0xff)) * size + function];
+			}
+			return hash & MASK_32;
+		}
+
+		@Override
+		public void minimize(long x, long[] minimums) {
+			int b0 = (int) (x & 0xff) * size;
+			int b1 = (256 + (int) ((x >>> 8) & 0xff)) * size;
+			int b2 = (512 + (int) ((x >>> 16) & 0xff)) * size;
+			int b3 = (768 + (int) ((x >>> 24) & 0xff)) * size;
+			int b4 = (1024 + (int) ((x >>> 32) & 0xff)) * size;
+			int b5 = (1280 + (int) ((x >>> 40) & 0xff)) * size;
+			int b6 = (1536 + (int) ((x >>> 48) & 0xff)) * size;
+			int b7 = (1792 + (int) (x >>> 56)) * size;
+			for (int i = 0; i < size; i++) {
+				long hash = (tables[b0 + i] ^ tables[b1 + i] ^ tables[b2 + i] ^ tables[b3 + i] ^ tables[b4 + i]
+						^ tables[b5 + i] ^ tables[b6 + i] ^ tables[b7 + i]) & MASK_32;
+				if (hash < minimums[i]) {
+					minimums[i] = hash;
+				}
+			}
+		}
+
+		@Override
+		public Kind kind() {
+			return Kind.TABULATION;
+		}
+	}
+
+	/**
+	 * MurmurHash3 finalizer of x XOR a random key per function.
+	 */
+	private static class Murmur extends HashFamily {
+		private long[] keys;
+
+		Murmur(int size, long seed) {
+			super(size, seed);
+			Random rand = new Random(seed);
+			keys = new long[size];
+			for (int i = 0; i < size; i++) {
+				keys[i] = rand.nextLong();
+			}
+		}
+
+		@Override
+		public long hash(int function, long x) {
+			return Helper.mix64(x ^ keys[function]) >>> 32;
+		}
+
+		@Override
+		public void minimize(long x, long[] minimums) {
+			for (int i = 0; i < size; i++) {
+				long hash = Helper.mix64(x ^ keys[i]) >>> 32;
+				if (hash < minimums[i]) {
+					minimums[i] = hash;
+				}
+			}
+		}
+
+		@Override
+		public Kind kind() {
+			return Kind.MURMUR;
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package minhash;
+
+
+/**
+ * Including the static Helper methods, such as isPrime(), nextPrime(),
+ * nextRan()
+ * 
+ * @author YAN DENG
+ *
+ */
+public class Helper {
+	
+	private long startTime;
+	private long endTime;
+	private boolean ended = false;
+	private long usedTime;
+		
+	/**
+	 * Check if the given integer is a prime or not.
+	 * 
+	 * @param num
+	 * @return true: is a prime; false: else.
+	 */
+	public static boolean isPrime(int num) {
+		if (num == 2)
+			return true;
+		if (num % 2 == 0)
+			return false;
+		for (int i = 3; i * i <= num; i += 2)
+			if (num % i == 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Find the first prime bigger than the given integer.
+	 * 
+	 * @param num
+	 * @return a prime number
+	 */
+	public static int nextPrime(int num) {
+		int nextPrime = num;
+		if (nextPrime % 2 == 0)
+			nextPrime += 1;
+
+		while (!isPrime(nextPrime)) {
+			nextPrime += 2;
+		}
+		// System.out.println("Next prime is " + nextPrime);
+		return nextPrime;
+	}
+
+	/**
+	 * Mix the bits of the given value (the finalizer of MurmurHash3), so that
+	 * every input bit affects every output bit.
+	 * 
+	 * @param x
+	 * @return a well distributed 64 bit hash of x
+	 */
+	public static long mix64(long x) {
+		x ^= x >>> 33;
+		x *= 0xff51afd7ed558ccdL;
+		x ^= x >>> 33;
+		x *= 0xc4ceb9fe1a85ec53L;
+		x ^= x >>> 33;
+		return x;
+	}
+
+	/**
+	 * Hash the given bytes to 64 bits (FNV-1a, then mixed).
+	 * 
+	 * @param bytes
+	 * @param from
+	 *            first byte, inclusive
+	 * @param to
+	 *            last byte, exclusive
+	 * @return a 64 bit hash of the bytes
+	 */
+	public static long hash64(byte[] bytes, int from, int to) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = from; i < to; i++) {
+			hash ^= bytes[i] & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return mix64(hash);
+	}
+
+	public void startTimer() {
+		ended = false;
+		startTime = System.nanoTime();
+	}
+
+	public void stopTimer() {
+		ended = true;
+		endTime = System.nanoTime();
+		usedTime = endTime - startTime;
+	}
+
+	/**
+	 * 
+	 * @return the time between start and stop in milliseconds
+	 * @throws IllegalAccessException
+	 *             if the timer is still running
+	 */
+	public long getTime() throws IllegalAccessException {
+		return getNanos() / 1000000;
+	}
+
+	/**
+	 * 
+	 * @return the time between start and stop in seconds, with fractions
+	 * @throws IllegalAccessException
+	 *             if the timer is still running
+	 */
+	public double getSeconds() throws IllegalAccessException {
+		return getNanos() / 1e9;
+	}
+
+	/**
+	 * The timer reads System.nanoTime(), which unlike the wall clock never
+	 * jumps and resolves intervals far below a millisecond.
+	 * 
+	 * @return the time between start and stop in nanoseconds
+	 * @throws IllegalAccessException
+	 *             if the timer is still running
+	 */
+	public long getNanos() throws IllegalAccessException {
+		if (!ended) {
+			throw new IllegalAccessException("Timer is still running.");
+		}
+		return usedTime;
+	}
+	
+	public static int calculateB(int k, double s){
+		int b=1;
+		int optimalB=-1;
+		double value;
+		double bestValue=1;
+		for(;b<Math.sqrt(k);b++){
+			value=Math.abs(s-(Math.pow(1.0/b, ((double) b)/k)));
+			if(value<bestValue){
+				optimalB=b;
+				bestValue=value;				
+			}
+		}
+		return optimalB;
+	}
+}
@@ -0,0 +1,1015 @@
+package minhash;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class implements locality sensitive hashing to detect near duplicates of
+ * a document.
+ * 
+ * Documents can be added and removed after construction. Adding a document
+ * inserts it into the bucket of each band. Removing one only marks it with a
+ * tombstone, which queries skip; once a quarter of the documents are
+ * tombstones the index is compacted, i.e. the documents are renumbered and
+ * the band tables rebuilt without them.
+ * 
+ * @author YAN DENG
+ *
+ */
+public class LSH {
+
+	/**
+	 * Receives the candidate pairs of the collection.
+	 */
+	public interface PairVisitor {
+		/**
+		 * 
+		 * @param doc1
+		 *            index of the first document, doc1 < doc2
+		 * @param doc2
+		 *            index of the second document
+		 */
+		void pair(int doc1, int doc2);
+	}
+
+	/**
+	 * A document of the index matching a query, with its estimated
+	 * similarity to the query.
+	 */
+	public static class Match {
+		private String docName;
+		private double similarity;
+
+		Match(String docName, double similarity) {
+			this.docName = docName;
+			this.similarity = similarity;
+		}
+
+		/**
+		 * 
+		 * @return Returns the name of the matching document
+		 */
+		public String docName() {
+			return docName;
+		}
+
+		/**
+		 * 
+		 * @return Returns the Jaccard similarity estimated from the signatures
+		 */
+		public double similarity() {
+			return similarity;
+		}
+
+		@Override
+		public String toString() {
+			return docName + " (" + similarity + ")";
+		}
+	}
+
+	/**
+	 * Most similar first, ties by name.
+	 */
+	static final Comparator<Match> RANKING = new Comparator<Match>() {
+		public int compare(Match match1, Match match2) {
+			int compare = Double.compare(match2.similarity, match1.similarity);
+			return compare != 0 ? compare : match1.docName.compareTo(match2.docName);
+		}
+	};
+
+	private String[] docNames;
+	private SignatureMatrix minHashMatrix;
+	private int numDocuments;
+	private boolean[] removed; // tombstones of the removed documents
+	private int numRemoved;
+	private int bands;
+	private int r;// rows
+	private BandTable[] tables; // band key -> doc ids
+	private HashMap<String, Integer> docIds; // doc name -> index in docNames
+
+	private static final Metrics.Timer BAND_HASHING = Metrics.global().timer(Metrics.BAND_HASHING);
+	private static final Metrics.Timer QUERY = Metrics.global().timer(Metrics.QUERY);
+	private static final Metrics.Timer VERIFY = Metrics.global().timer(Metrics.VERIFY);
+	private static final Metrics.Histogram BUCKET_SIZES = Metrics.global().histogram(Metrics.BUCKET_SIZES);
+	private static final Metrics.Histogram CANDIDATES = Metrics.global().histogram(Metrics.CANDIDATES);
+
+	/**
+	 * Constructs an in- stance of LSH
+	 * 
+	 * @param minHashMatrix
+	 *            MinHash matrix of the document collection
+	 * @param docNames
+	 *            an array of Strings consisting of names of documents/files in
+	 *            the document collection
+	 * @param bands
+	 *            the number of bands to be used to perform locality sensitive
+	 *            hashing
+	 */
+	public LSH(int[][] minHashMatrix, String[] docNames, int bands) {
+		this(new SignatureMatrix(minHashMatrix), docNames, bands);
+	}
+
+	/**
+	 * Constructs an instance of LSH over a flat MinHash matrix, which the
+	 * index holds on to and appends the added documents to.
+	 * 
+	 * @param minHashMatrix
+	 *            MinHash matrix of the document collection
+	 * @param docNames
+	 *            an array of Strings consisting of names of documents/files in
+	 *            the document collection
+	 * @param bands
+	 *            the number of bands to be used to perform locality sensitive
+	 *            hashing
+	 */
+	public LSH(SignatureMatrix minHashMatrix, String[] docNames, int bands) {
+		this.minHashMatrix = minHashMatrix;
+		this.docNames = docNames;
+		this.numDocuments = docNames.length;
+		this.removed = new boolean[numDocuments];
+		this.bands = bands;
+		if (bands == 0)
+			throw new IllegalArgumentException("number of bands can not be 0.");
+		this.r = minHashMatrix.numPermutations() / bands;
+		if (minHashMatrix.numPermutations() % bands != 0) {
+			System.out.printf("There are %d minhash signatures not being used.%n",
+					minHashMatrix.numPermutations() % bands);
+		}
+		this.docIds = new HashMap<String, Integer>();
+		for (int i = 0; i < docNames.length; i++) {
+			docIds.put(docNames[i], i);
+		}
+		this.tables = computeTables();
+	}
+
+	/**
+	 * Takes name of a document as parameter and returns an array list of names
+	 * of the near duplicate documents(may contain false positive). The
+	 * document's bucket in every band is looked up by the band's key,
+	 * recomputed from the document's signature, so only b buckets are
+	 * visited.
+	 * 
+	 * @param docName
+	 * @return an array list of names of the near duplicate documents
+	 */
+	public String[] nearDuplicatesOf(String docName) {
+		Integer doc = fileOrder(docName);// throw IllegalArgument exception if
+											// docName does not exist
+		if (docNames[doc].equals(".DS_Store"))
+			return new String[0]; // not in any bucket
+		long start = QUERY.start();
+		int[] similarDocuments = new int[16];
+		int count = 0;
+		for (int i = 0; i < bands; i++) {
+			BandTable ti = tables[i];
+			int bucket = ti.bucket(bandKey(doc, i));
+			if (bucket == -1)
+				continue;
+			int size = ti.bucketSize(bucket);
+			if (count + size > similarDocuments.length) {
+				similarDocuments = Arrays.copyOf(similarDocuments, Math.max(2 * similarDocuments.length, count + size));
+			}
+			for (int j = 0; j < size; j++) {
+				int s = ti.doc(bucket, j);
+				if (!removed[s])
+					similarDocuments[count++] = s;
+			}
+		}
+		Arrays.sort(similarDocuments, 0, count);
+		String[] names = new String[count];
+		int numNames = 0;
+		for (int j = 0; j < count; j++) {
+			int s = similarDocuments[j];
+			if (s != doc && (j == 0 || s != similarDocuments[j - 1])) {
+				names[numNames++] = docNames[s];
+			}
+		}
+		QUERY.stop(start);
+		CANDIDATES.record(numNames);
+		return Arrays.copyOf(names, numNames);
+	}
+
+	/**
+	 * Find the documents of the index sharing a bucket with a signature that
+	 * need not belong to the index, e.g. the signature of an incoming text
+	 * from MinHash.signatureOf. The signature's key in each band is looked up
+	 * like in nearDuplicatesOf, and the candidates are ranked by their
+	 * estimated similarity to the signature, most similar first. Nothing is
+	 * added to the index.
+	 * 
+	 * @param signature
+	 *            MinHash signature computed with the hash functions of the
+	 *            indexed signatures
+	 * @param threshold
+	 *            smallest estimated similarity of a match, 0 returns every
+	 *            candidate
+	 * @return Returns the matches, ranked by estimated similarity
+	 */
+	public Match[] query(int[] signature, double threshold) {
+		checkLength(signature);
+		return query(signature, null, threshold, 0);
+	}
+
+	/**
+	 * Multi-probe query: like query, but besides the signature's own bucket
+	 * in every band, up to the given number of neighbouring buckets are
+	 * looked up, whose keys are those of the signature with one value
+	 * replaced by its runner-up (see probe). A few probes per band reach
+	 * about the recall of more bands, without the memory of their tables.
+	 * 
+	 * @param signature
+	 *            MinHash signature computed with the hash functions of the
+	 *            indexed signatures
+	 * @param runnerUps
+	 *            runner-ups of its values, e.g. from MinHash.runnerUpsOf
+	 * @param threshold
+	 *            smallest estimated similarity of a match, 0 returns every
+	 *            candidate
+	 * @param probes
+	 *            number of neighbouring buckets to look up, 0 for none
+	 * @return Returns the matches, ranked by estimated similarity
+	 */
+	public Match[] query(int[] signature, int[] runnerUps, double threshold, int probes) {
+		checkLength(signature);
+		long start = QUERY.start();
+		int[] exact = candidates(signature);
+		int[] probed = probe(signature, runnerUps, probes, exact, Integer.MAX_VALUE);
+		int[] candidates = Arrays.copyOf(exact, exact.length + probed.length);
+		System.arraycopy(probed, 0, candidates, exact.length, probed.length);
+		Arrays.sort(candidates);
+		start = QUERY.stop(start);
+		Match[] matches = new Match[candidates.length];
+		int numMatches = 0;
+		int numCandidates = 0;
+		for (int j = 0; j < candidates.length; j++) {
+			int s = candidates[j];
+			if (j > 0 && s == candidates[j - 1])
+				continue;
+			numCandidates++;
+			double similarity = minHashMatrix.approximateJaccard(signature, s);
+			if (similarity >= threshold) {
+				matches[numMatches++] = new Match(docNames[s], similarity);
+			}
+		}
+		matches = Arrays.copyOf(matches, numMatches);
+		Arrays.sort(matches, RANKING);
+		VERIFY.stop(start);
+		CANDIDATES.record(numCandidates);
+		return matches;
+	}
+
+	/**
+	 * Find the k documents of the index most similar to a signature that need
+	 * not belong to the index, among the documents sharing a bucket with it.
+	 * 
+	 * The candidates are scored in decreasing order of the number of bands
+	 * they collide in, and the k best are kept in a heap. A candidate
+	 * colliding in c of the b bands differs from the signature in at least one
+	 * value of each of the other b-c bands, so its similarity is at most
+	 * (K-(b-c))/K; the search stops once this bound falls below the k-th
+	 * best similarity, and a candidate is given up as soon as its remaining
+	 * values can not lift it to the k-th best.
+	 * 
+	 * Fewer than k matches are returned if fewer than k documents share a
+	 * bucket with the signature.
+	 * 
+	 * @param signature
+	 *            MinHash signature computed with the hash functions of the
+	 *            indexed signatures
+	 * @param k
+	 *            number of matches wanted
+	 * @return Returns at most k matches, ranked by estimated similarity
+	 */
+	public Match[] topK(int[] signature, int k) {
+		checkLength(signature);
+		return topK(signature, null, k, 0, -1);
+	}
+
+	/**
+	 * Like topK, but if fewer than k documents share a bucket with the
+	 * signature, the search is widened to neighbouring buckets (see probe)
+	 * until k candidates are found or the probes are used up.
+	 * 
+	 * @param signature
+	 *            MinHash signature computed with the hash functions of the
+	 *            indexed signatures
+	 * @param runnerUps
+	 *            runner-ups of its values, e.g. from MinHash.runnerUpsOf
+	 * @param k
+	 *            number of matches wanted
+	 * @param probes
+	 *            largest number of neighbouring buckets to look up
+	 * @return Returns at most k matches, ranked by estimated similarity
+	 */
+	public Match[] topK(int[] signature, int[] runnerUps, int k, int probes) {
+		checkLength(signature);
+		return topK(signature, runnerUps, k, probes, -1);
+	}
+
+	/**
+	 * Find the k documents of the index most similar to one of its documents,
+	 * like topK of its signature, the document itself left out.
+	 * 
+	 * @param docName
+	 * @param k
+	 *            number of matches wanted
+	 * @return Returns at most k matches, ranked by estimated similarity
+	 */
+	public Match[] topK(String docName, int k) {
+		int doc = fileOrder(docName);
+		if (docNames[doc].equals(".DS_Store"))
+			return new Match[0]; // not in any bucket
+		return topK(minHashMatrix.row(doc), null, k, 0, doc);
+	}
+
+	/**
+	 * 
+	 * @param exclude
+	 *            index of the document to leave out, -1 for none
+	 */
+	private Match[] topK(int[] signature, int[] runnerUps, int k, int probes, int exclude) {
+		if (k < 1)
+			throw new IllegalArgumentException("k should be greater or equal to 1.");
+		long start = QUERY.start();
+		int[] candidates = candidates(signature);
+		// k others besides the excluded document, which is always found
+		int[] probed = probe(signature, runnerUps, probes, candidates, exclude == -1 ? k : k + 1);
+		// (b - collisions) << 32 | doc, so that sorting puts the most
+		// colliding candidates first; probed ones collide in no band
+		long[] ranked = new long[candidates.length + probed.length];
+		int numRanked = 0;
+		for (int j = 0; j < candidates.length;) {
+			int s = candidates[j];
+			int collisions = 0;
+			while (j < candidates.length && candidates[j] == s) {
+				collisions++;
+				j++;
+			}
+			if (s != exclude)
+				ranked[numRanked++] = ((long) (bands - collisions) << 32) | s;
+		}
+		for (int s : probed) {
+			if (s != exclude)
+				ranked[numRanked++] = ((long) bands << 32) | s;
+		}
+		Arrays.sort(ranked, 0, numRanked);
+		start = QUERY.stop(start);
+		int numPermutations = minHashMatrix.numPermutations();
+		PriorityQueue<Match> heap = new PriorityQueue<Match>(k, Collections.reverseOrder(RANKING));
+		int kthEqualities = 0; // equal values of the k-th best match
+		for (int j = 0; j < numRanked; j++) {
+			int s = (int) ranked[j];
+			int collisions = bands - (int) (ranked[j] >>> 32);
+			if (heap.size() == k && numPermutations - (bands - collisions) < kthEqualities)
+				break; // no candidate left can reach the k-th best
+			int equalities = minHashMatrix.equalities(signature, s, heap.size() == k ? kthEqualities : 0);
+			if (heap.size() == k && equalities < kthEqualities)
+				continue;
+			Match match = new Match(docNames[s], (double) equalities / numPermutations);
+			if (heap.size() < k) {
+				heap.add(match);
+			} else if (RANKING.compare(match, heap.peek()) < 0) {
+				heap.poll();
+				heap.add(match);
+			}
+			if (heap.size() == k)
+				kthEqualities = (int) Math.round(heap.peek().similarity * numPermutations);
+		}
+		Match[] matches = heap.toArray(new Match[heap.size()]);
+		Arrays.sort(matches, RANKING);
+		VERIFY.stop(start);
+		CANDIDATES.record(numRanked);
+		return matches;
+	}
+
+	/**
+	 * 
+	 * @return Returns the sorted indexes of the documents sharing a bucket
+	 *         with the signature, once per band they share one in, without
+	 *         the removed ones
+	 */
+	private int[] candidates(int[] signature) {
+		int[] candidates = new int[16];
+		int count = 0;
+		for (int i = 0; i < bands; i++) {
+			BandTable ti = tables[i];
+			int bucket = ti.bucket(bandKey(signature, i, r));
+			if (bucket == -1)
+				continue;
+			int size = ti.bucketSize(bucket);
+			if (count + size > candidates.length) {
+				candidates = Arrays.copyOf(candidates, Math.max(2 * candidates.length, count + size));
+			}
+			for (int j = 0; j < size; j++) {
+				int s = ti.doc(bucket, j);
+				if (!removed[s])
+					candidates[count++] = s;
+			}
+		}
+		Arrays.sort(candidates, 0, count);
+		return Arrays.copyOf(candidates, count);
+	}
+
+	/**
+	 * Look up neighbouring buckets of a signature. A similar document whose
+	 * band slice differs from the signature's in one value most likely has
+	 * the runner-up there: the second smallest hash, which becomes the
+	 * minimum when the term of the smallest is missing. Each probe is the
+	 * key of one band with one value replaced by its runner-up. The values
+	 * with the smallest runner-up are probed first: a small runner-up is the
+	 * likeliest to be another document's minimum. Ordering by the gap between
+	 * the value and its runner-up instead found slightly fewer near
+	 * duplicates per probe. Values without a runner-up are never probed.
+	 * 
+	 * @param signature
+	 * @param runnerUps
+	 *            runner-ups of the values of the signature, null for no
+	 *            probes
+	 * @param probes
+	 *            largest number of buckets to look up
+	 * @param exact
+	 *            sorted candidates of the signature's own buckets
+	 * @param enough
+	 *            stop once this many distinct candidates are known
+	 * @return Returns the sorted documents found only in the probed buckets
+	 */
+	private int[] probe(int[] signature, int[] runnerUps, int probes, int[] exact, int enough) {
+		if (probes < 0)
+			throw new IllegalArgumentException("Number of probes should be greater or equal to 0.");
+		if (runnerUps == null || probes == 0)
+			return new int[0];
+		if (runnerUps.length != signature.length)
+			throw new IllegalArgumentException("There should be one runner-up per value of the signature.");
+		int numExact = 0;
+		for (int j = 0; j < exact.length; j++) {
+			if (j == 0 || exact[j] != exact[j - 1])
+				numExact++;
+		}
+		// runnerUp << 31 | index, smallest runner-up first
+		long[] order = new long[bands * r];
+		int numOrder = 0;
+		for (int index = 0; index < order.length; index++) {
+			long runnerUp = runnerUps[index] & 0xffffffffL;
+			if (runnerUp != (signature[index] & 0xffffffffL))
+				order[numOrder++] = runnerUp << 31 | index;
+		}
+		Arrays.sort(order, 0, numOrder);
+		int[] found = new int[16];
+		int count = 0; // found documents, repeated ones included until sorted
+		int[] perturbed = signature.clone();
+		for (int p = 0; p < Math.min(probes, numOrder); p++) {
+			if (numExact + count >= enough) {
+				count = sortDistinct(found, count);
+				if (numExact + count >= enough)
+					break;
+			}
+			int index = (int) (order[p] & Integer.MAX_VALUE);
+			int bandIndex = index / r;
+			perturbed[index] = runnerUps[index];
+			BandTable ti = tables[bandIndex];
+			int bucket = ti.bucket(bandKey(perturbed, bandIndex, r));
+			perturbed[index] = signature[index];
+			if (bucket == -1)
+				continue;
+			int size = ti.bucketSize(bucket);
+			if (count + size > found.length) {
+				found = Arrays.copyOf(found, Math.max(2 * found.length, count + size));
+			}
+			for (int j = 0; j < size; j++) {
+				int s = ti.doc(bucket, j);
+				if (!removed[s] && Arrays.binarySearch(exact, s) < 0)
+					found[count++] = s;
+			}
+		}
+		return Arrays.copyOf(found, sortDistinct(found, count));
+	}
+
+	/**
+	 * Sort the first count documents and drop the repeated ones.
+	 * 
+	 * @return Returns the number of distinct documents, now first in docs
+	 */
+	private static int sortDistinct(int[] docs, int count) {
+		Arrays.sort(docs, 0, count);
+		int distinct = 0;
+		for (int j = 0; j < count; j++) {
+			if (j == 0 || docs[j] != docs[j - 1])
+				docs[distinct++] = docs[j];
+		}
+		return distinct;
+	}
+
+	private void checkLength(int[] signature) {
+		if (signature.length != minHashMatrix.numPermutations())
+			throw new IllegalArgumentException(
+					"The signature should have " + minHashMatrix.numPermutations() + " values.");
+	}
+
+	/**
+	 * Add a document to the index, inserting it into one bucket per band.
+	 * 
+	 * @param docName
+	 * @param signature
+	 *            MinHash signature of the document, computed with the hash
+	 *            functions of the indexed signatures
+	 * @return Returns the index of the new document
+	 */
+	public int addDocument(String docName, int[] signature) {
+		if (docIds.containsKey(docName))
+			throw new IllegalArgumentException("File: " + docName + " already exists.");
+		checkLength(signature);
+		if (numDocuments == docNames.length) {
+			int capacity = Math.max(16, 2 * numDocuments);
+			docNames = Arrays.copyOf(docNames, capacity);
+			removed = Arrays.copyOf(removed, capacity);
+		}
+		int doc = numDocuments++;
+		docNames[doc] = docName;
+		minHashMatrix.add(signature);
+		docIds.put(docName, doc);
+		if (!docName.equals(".DS_Store")) {
+			long start = BAND_HASHING.start();
+			for (int i = 0; i < bands; i++) {
+				tables[i].add(bandKey(signature, i, r), doc);
+			}
+			BAND_HASHING.stop(start);
+		}
+		return doc;
+	}
+
+	/**
+	 * Remove a document from the index. It is marked with a tombstone and left
+	 * out of all results; the index is compacted once a quarter of its
+	 * documents are removed.
+	 * 
+	 * @param docName
+	 */
+	public void removeDocument(String docName) {
+		int doc = fileOrder(docName);
+		docIds.remove(docName);
+		removed[doc] = true;
+		numRemoved++;
+		if (4L * numRemoved > numDocuments) {
+			compact();
+		}
+	}
+
+	/**
+	 * Drop the removed documents: the remaining ones are renumbered in their
+	 * order and the band tables are rebuilt from their signatures. Document
+	 * indexes obtained before, e.g. from forEachCandidatePair, are no longer
+	 * valid afterwards.
+	 */
+	public void compact() {
+		int count = numDocuments - numRemoved;
+		String[] names = new String[count];
+		boolean[] keep = new boolean[numDocuments];
+		count = 0;
+		for (int i = 0; i < numDocuments; i++) {
+			if (removed[i])
+				continue;
+			names[count] = docNames[i];
+			keep[i] = true;
+			docIds.put(names[count], count);
+			count++;
+		}
+		this.numDocuments = count;
+		this.docNames = names;
+		this.minHashMatrix = minHashMatrix.select(keep, count);
+		this.removed = new boolean[count];
+		this.numRemoved = 0;
+		this.tables = computeTables();
+	}
+
+	/**
+	 * 
+	 * @return Returns the names of the documents in the order of their
+	 *         indexes, removed ones included until the next compaction
+	 */
+	public String[] docNames() {
+		return Arrays.copyOf(docNames, numDocuments);
+	}
+
+	/**
+	 * 
+	 * @return Returns the MinHash matrix the index holds, in the order of
+	 *         docNames
+	 */
+	public int[][] minHashMatrix() {
+		return minHashMatrix.toArray();
+	}
+
+	/**
+	 * 
+	 * @return Returns the flat MinHash matrix the index holds, in the order of
+	 *         docNames; it is shared with the index
+	 */
+	public SignatureMatrix signatureMatrix() {
+		return minHashMatrix;
+	}
+
+	/**
+	 * 
+	 * @return Returns the number of removed documents not compacted yet
+	 */
+	public int numRemoved() {
+		return numRemoved;
+	}
+
+	/**
+	 * Walk every bucket of every band once and pass each pair of documents
+	 * sharing a bucket to the visitor. A pair colliding in several bands is
+	 * only passed for the first of them, so every candidate pair is visited
+	 * exactly once and no set of pairs is kept. The bands are walked by the
+	 * given number of threads, so the visitor must be thread safe when
+	 * parallelism > 1.
+	 * 
+	 * @param visitor
+	 * @param parallelism
+	 *            number of threads walking the bands
+	 */
+	public void forEachCandidatePair(final PairVisitor visitor, int parallelism) {
+		if (parallelism == 1) {
+			for (int i = 0; i < bands; i++) {
+				forEachCandidatePairOfBand(visitor, i);
+			}
+			return;
+		}
+		RecursiveAction[] walks = new RecursiveAction[bands];
+		for (int i = 0; i < bands; i++) {
+			final int bandIndex = i;
+			walks[i] = new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					forEachCandidatePairOfBand(visitor, bandIndex);
+				}
+			};
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (RecursiveAction walk : walks) {
+				pool.execute(walk);
+			}
+			for (RecursiveAction walk : walks) {
+				walk.join();
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Pass the pairs of every bucket of the band that do not collide in an
+	 * earlier band.
+	 * 
+	 * @param visitor
+	 * @param bandIndex
+	 */
+	private void forEachCandidatePairOfBand(PairVisitor visitor, int bandIndex) {
+		BandTable table = tables[bandIndex];
+		for (int slot = 0; slot < table.capacity(); slot++) {
+			int size = table.bucketSize(slot);
+			for (int j = 1; j < size; j++) {
+				int doc1 = table.doc(slot, j);
+				if (removed[doc1])
+					continue;
+				for (int l = 0; l < j; l++) {
+					int doc2 = table.doc(slot, l);
+					if (!removed[doc2] && !collideBefore(doc1, doc2, bandIndex)) {
+						visitor.pair(Math.min(doc1, doc2), Math.max(doc1, doc2));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return Returns true if the two documents have the same slice in a band
+	 *         before the given one
+	 */
+	private boolean collideBefore(int doc1, int doc2, int bandIndex) {
+		int[] values = minHashMatrix.values();
+		int offset1 = doc1 * minHashMatrix.numPermutations();
+		int offset2 = doc2 * minHashMatrix.numPermutations();
+		for (int i = 0; i < bandIndex; i++) {
+			int index = r * i;
+			int upperBound = r * (i + 1);
+			while (index < upperBound && values[offset1 + index] == values[offset2 + index]) {
+				index++;
+			}
+			if (index == upperBound)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 
+	 * @return Returns the number of bands
+	 */
+	public int bands() {
+		return bands;
+	}
+
+	/**
+	 * Write the index to the given file in the layout MappedLSH reads: per
+	 * band the sorted keys, the start of each key's postings and the postings
+	 * (doc ids), plus every document's key in each band and the document
+	 * names. All sections start at a multiple of 8. Removed documents are
+	 * compacted away first.
+	 * 
+	 * <pre>
+	 * int    magic "LSHI", version, numDocuments, bands, r, 0
+	 * long   offset of the name offsets, of the doc ids sorted by name, of the names
+	 * per band: long offset of the keys, of the starts, of the postings,
+	 *           of the doc keys; int number of keys, 0
+	 * per band: long[] sorted keys, int[] starts (number of keys + 1),
+	 *           int[] postings, long[] key of every document
+	 * long[] offset of each name in the names
+	 * int[]  doc ids sorted by name
+	 * per document: int length, UTF-8 bytes of its name
+	 * </pre>
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public void write(File file) throws IOException {
+		if (numRemoved > 0) {
+			compact();
+		}
+		int numIndexed = 0;
+		for (int i = 0; i < numDocuments; i++) {
+			if (!docNames[i].equals(".DS_Store"))
+				numIndexed++;
+		}
+		byte[][] names = new byte[numDocuments][];
+		long namesSize = 0;
+		long[] nameOffsets = new long[numDocuments];
+		for (int i = 0; i < numDocuments; i++) {
+			names[i] = docNames[i].getBytes(StandardCharsets.UTF_8);
+			nameOffsets[i] = namesSize;
+			namesSize += 4 + names[i].length;
+		}
+		Integer[] byName = new Integer[numDocuments];
+		for (int i = 0; i < numDocuments; i++) {
+			byName[i] = i;
+		}
+		Arrays.sort(byName, new Comparator<Integer>() {
+			public int compare(Integer doc1, Integer doc2) {
+				return docNames[doc1].compareTo(docNames[doc2]);
+			}
+		});
+
+		// compute the offsets of all sections
+		long position = MappedLSH.HEADER_SIZE + (long) MappedLSH.BAND_ENTRY_SIZE * bands;
+		long[][] bandOffsets = new long[bands][4];
+		for (int i = 0; i < bands; i++) {
+			int numKeys = tables[i].numBuckets();
+			bandOffsets[i][0] = position;
+			position = align(position + 8L * numKeys);
+			bandOffsets[i][1] = position;
+			position = align(position + 4L * (numKeys + 1));
+			bandOffsets[i][2] = position;
+			position = align(position + 4L * numIndexed);
+			bandOffsets[i][3] = position;
+			position += 8L * numDocuments;
+		}
+		long nameOffsetsOffset = position;
+		position += 8L * numDocuments;
+		long byNameOffset = position;
+		position = align(position + 4L * numDocuments);
+		long namesOffset = position;
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MappedLSH.MAGIC);
+			out.writeInt(MappedLSH.VERSION);
+			out.writeInt(numDocuments);
+			out.writeInt(bands);
+			out.writeInt(r);
+			out.writeInt(0);
+			out.writeLong(nameOffsetsOffset);
+			out.writeLong(byNameOffset);
+			out.writeLong(namesOffset);
+			for (int i = 0; i < bands; i++) {
+				for (long offset : bandOffsets[i]) {
+					out.writeLong(offset);
+				}
+				out.writeInt(tables[i].numBuckets());
+				out.writeInt(0);
+			}
+			position = MappedLSH.HEADER_SIZE + (long) MappedLSH.BAND_ENTRY_SIZE * bands;
+			for (int i = 0; i < bands; i++) {
+				BandTable table = tables[i];
+				long[] keys = new long[table.numBuckets()];
+				int numKeys = 0;
+				for (int slot = 0; slot < table.capacity(); slot++) {
+					if (table.bucketSize(slot) > 0)
+						keys[numKeys++] = table.key(slot);
+				}
+				Arrays.sort(keys);
+				for (long key : keys) {
+					out.writeLong(key);
+				}
+				position = pad(out, position + 8L * numKeys);
+				int start = 0;
+				for (long key : keys) {
+					out.writeInt(start);
+					start += table.bucketSize(table.bucket(key));
+				}
+				out.writeInt(start);
+				position = pad(out, position + 4L * (numKeys + 1));
+				for (long key : keys) {
+					int slot = table.bucket(key);
+					int[] docs = new int[table.bucketSize(slot)];
+					for (int j = 0; j < docs.length; j++) {
+						docs[j] = table.doc(slot, j);
+					}
+					Arrays.sort(docs);
+					for (int doc : docs) {
+						out.writeInt(doc);
+					}
+				}
+				position = pad(out, position + 4L * numIndexed);
+				for (int doc = 0; doc < numDocuments; doc++) {
+					out.writeLong(docNames[doc].equals(".DS_Store") ? 0 : bandKey(doc, i));
+				}
+				position += 8L * numDocuments;
+			}
+			for (long offset : nameOffsets) {
+				out.writeLong(offset);
+			}
+			position += 8L * numDocuments;
+			for (int doc : byName) {
+				out.writeInt(doc);
+			}
+			pad(out, position + 4L * numDocuments);
+			for (byte[] name : names) {
+				out.writeInt(name.length);
+				out.write(name);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * 
+	 * @return Returns the position rounded up to a multiple of 8
+	 */
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	/**
+	 * Write zeros up to the next multiple of 8.
+	 * 
+	 * @return Returns the aligned position
+	 */
+	private static long pad(DataOutputStream out, long position) throws IOException {
+		long aligned = align(position);
+		for (long i = position; i < aligned; i++) {
+			out.writeByte(0);
+		}
+		return aligned;
+	}
+
+	/**
+	 * Build the index over the signatures of a signature file and write it to
+	 * an index file for MappedLSH.
+	 * 
+	 * @param args
+	 *            &lt;signature file&gt; &lt;number of bands&gt; &lt;index
+	 *            file&gt;
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3) {
+			throw new IllegalArgumentException(
+					"Invalid arguments, should be: <signature file> <number of bands> <index file>");
+		}
+		SignatureStore store = SignatureStore.open(new File(args[0]));
+		int bands = Integer.parseInt(args[1]);
+		if (bands < 1 || bands > store.numPermutations()) {
+			throw new IllegalArgumentException(
+					"Number of bands should be greater or equal to 1 and less or equal to number of permutations.");
+		}
+		LSH lsh = new LSH(store.minHashMatrix(), store.allDocs(), bands);
+		lsh.write(new File(args[2]));
+		System.out.println("Index of " + store.allDocs().length + " files with " + bands + " bands is written to "
+				+ args[2] + ".");
+	}
+
+	/**
+	 * Compute b hash Tables, T1,......Tb, and record the sizes of their
+	 * buckets.
+	 * 
+	 * @return the b hash Tables
+	 */
+	private BandTable[] computeTables() {
+		long start = BAND_HASHING.start();
+		BandTable[] tables = new BandTable[bands];
+		for (int i = 0; i < bands; i++) {
+			tables[i] = computeTablei(i);
+		}
+		BAND_HASHING.stop(start);
+		for (BandTable table : tables) {
+			for (int slot = 0; slot < table.capacity(); slot++) {
+				int size = table.bucketSize(slot);
+				if (size > 0)
+					BUCKET_SIZES.record(size);
+			}
+		}
+		return tables;
+	}
+
+	/**
+	 * Compute hash Table Ti
+	 * 
+	 * @param bandIndex
+	 * @return hash Table Ti
+	 */
+	private BandTable computeTablei(int bandIndex) {
+		BandTable table = new BandTable(numDocuments);
+		for (int i = 0; i < numDocuments; i++) {
+			if (removed[i] || docNames[i].equals(".DS_Store"))
+				continue;
+			table.add(bandKey(i, bandIndex), i);
+		}
+		return table;
+	}
+
+	/**
+	 * Hash the r min hash values of the band to 64 bits, straight from the
+	 * signature. Two different slices get the same key with probability about
+	 * 2^-64, so the buckets hold (almost) exactly the documents whose slices
+	 * are equal.
+	 * 
+	 * @param signature
+	 * @param bandIndex
+	 * @param r
+	 *            rows per band
+	 * @return the key of the document's bucket in the band
+	 */
+	static long bandKey(int[] signature, int bandIndex, int r) {
+		return bandKey(signature, 0, bandIndex, r);
+	}
+
+	/**
+	 * 
+	 * @param values
+	 * @param offset
+	 *            first value of the signature in values
+	 * @param bandIndex
+	 * @param r
+	 *            rows per band
+	 * @return the key of the bucket in the band of the signature at offset
+	 */
+	static long bandKey(int[] values, int offset, int bandIndex, int r) {
+		long hash = bandIndex;
+		int upperBound = offset + r * (bandIndex + 1);
+		for (int index = offset + r * bandIndex; index < upperBound; index++) {
+			hash = (hash ^ (values[index] & 0xffffffffL)) * 0x9e3779b97f4a7c15L;
+			hash ^= hash >>> 29;
+		}
+		return Helper.mix64(hash);
+	}
+
+	/**
+	 * 
+	 * @param doc
+	 * @param bandIndex
+	 * @return the key of the document's bucket in the band
+	 */
+	private long bandKey(int doc, int bandIndex) {
+		return bandKey(minHashMatrix.values(), doc * minHashMatrix.numPermutations(), bandIndex, r);
+	}
+
+	/**
+	 * Return the index of the given file in the files array
+	 * 
+	 * @param file
+	 * @return the index of the given file in the files array
+	 */
+	private int fileOrder(String file) {
+		Integer index = docIds.get(file);
+		if (index == null) {
+			throw new IllegalArgumentException("File: "+file+ " does not exist.");
+		}
+		return index;
+	}
+}
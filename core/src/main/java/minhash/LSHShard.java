@@ -0,0 +1,183 @@
+package minhash;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * One shard of a ShardedLSH index, run as its own process: it builds an LSH
+ * index over a range of the documents of a signature file, with all bands,
+ * and answers the queries of the coordinator over a socket on the loopback
+ * interface. Once the index is built, the shard prints "PORT &lt;port&gt;" on
+ * its standard output and accepts the coordinator's connection; it exits when
+ * the coordinator closes it or the connection.
+ *
+ * Requests and responses are big endian, as written by DataOutputStream:
+ *
+ * <pre>
+ * QUERY: int QUERY, double threshold, int K, int[K] signature
+ * TOPK:  int TOPK, int k, int K, int[K] signature
+ * CLOSE: int CLOSE
+ * response: int number of matches, per match: UTF name, double similarity;
+ *           or int ERROR, UTF message: the request failed, e.g. it was
+ *           refused by the index, and the shard serves the next one;
+ *           or int PROTOCOL_ERROR, UTF message: the request could not be
+ *           read, and the shard closes the connection
+ * </pre>
+ *
+ * @author YAN DENG
+ *
+ */
+public class LSHShard {
+
+	static final int CLOSE = 0;
+	static final int QUERY = 1;
+	static final int TOPK = 2;
+	static final int ERROR = -1;
+	static final int PROTOCOL_ERROR = -2;
+	static final String READY = "PORT "; // followed by the port
+	private static final int MAX_SIGNATURE = 1 << 24; // values of a readable signature
+
+	private LSH lsh;
+	private int numPermutations;
+
+	/**
+	 * Constructor, builds the index of the shard.
+	 *
+	 * @param store
+	 *            signatures of the collection
+	 * @param from
+	 *            first document of the shard, inclusive
+	 * @param to
+	 *            last document of the shard, exclusive
+	 * @param bands
+	 */
+	public LSHShard(SignatureStore store, int from, int to, int bands) {
+		String[] docNames = Arrays.copyOfRange(store.allDocs(), from, to);
+		this.lsh = new LSH(store.signatureMatrix(from, to), docNames, bands);
+		this.numPermutations = store.numPermutations();
+	}
+
+	/**
+	 * Answer the requests of one connection until it is closed.
+	 *
+	 * @param socket
+	 * @throws IOException
+	 */
+	public void serve(Socket socket) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		try {
+			while (true) {
+				int op;
+				try {
+					op = in.readInt();
+				} catch (EOFException e) {
+					return; // the coordinator is gone
+				}
+				if (op == CLOSE)
+					return;
+				LSH.Match[] matches;
+				try {
+					matches = answer(op, in);
+				} catch (ProtocolException e) {
+					out.writeInt(PROTOCOL_ERROR);
+					out.writeUTF(e.getMessage());
+					out.flush();
+					return; // the rest of the stream can not be read
+				} catch (RuntimeException e) {
+					out.writeInt(ERROR);
+					out.writeUTF(e.toString());
+					out.flush();
+					continue;
+				}
+				out.writeInt(matches.length);
+				for (LSH.Match match : matches) {
+					out.writeUTF(match.docName());
+					out.writeDouble(match.similarity());
+				}
+				out.flush();
+			}
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Read the rest of a request and answer it.
+	 *
+	 * @param op
+	 * @param in
+	 * @return Returns the matches
+	 * @throws ProtocolException
+	 *             if the request is not one of the protocol
+	 * @throws IOException
+	 */
+	private LSH.Match[] answer(int op, DataInputStream in) throws IOException {
+		if (op == QUERY) {
+			double threshold = in.readDouble();
+			return lsh.query(readSignature(in), threshold);
+		}
+		if (op == TOPK) {
+			int k = in.readInt();
+			return lsh.topK(readSignature(in), k);
+		}
+		throw new ProtocolException("Unknown request " + op + ".");
+	}
+
+	/**
+	 * Read a signature; one of the wrong length is read whole, and refused by
+	 * the index.
+	 */
+	private int[] readSignature(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > MAX_SIGNATURE)
+			throw new ProtocolException("Invalid signature length " + length + ".");
+		int[] signature = new int[length];
+		for (int i = 0; i < length; i++) {
+			signature[i] = in.readInt();
+		}
+		if (length != numPermutations)
+			throw new IllegalArgumentException("The signature should have " + numPermutations + " values.");
+		return signature;
+	}
+
+	/**
+	 * Build the shard and serve the coordinator.
+	 *
+	 * @param args
+	 *            &lt;signature file&gt; &lt;first document&gt; &lt;last
+	 *            document, exclusive&gt; &lt;number of bands&gt;
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 4) {
+			throw new IllegalArgumentException(
+					"Invalid arguments, should be: <signature file> <first document> <last document, exclusive> <number of bands>");
+		}
+		SignatureStore store = SignatureStore.open(new File(args[0]));
+		int from = Integer.parseInt(args[1]);
+		int to = Integer.parseInt(args[2]);
+		int bands = Integer.parseInt(args[3]);
+		if (bands < 1 || bands > store.numPermutations()) {
+			throw new IllegalArgumentException(
+					"Number of bands should be greater or equal to 1 and less or equal to number of permutations.");
+		}
+		LSHShard shard = new LSHShard(store, from, to, bands);
+		ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		System.out.println(READY + server.getLocalPort());
+		System.out.flush();
+		Socket socket = server.accept();
+		server.close();
+		shard.serve(socket);
+	}
+}
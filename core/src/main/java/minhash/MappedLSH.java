@@ -0,0 +1,262 @@
+package minhash;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Read-only LSH index opened from a file written by LSH.write. Every section
+ * of the file is memory mapped and nothing is copied into the heap: a query
+ * binary searches the document name, reads the document's key in each band,
+ * binary searches the band's sorted keys and reads the postings. Opening the
+ * index costs a few mappings, and only the pages a query touches become
+ * resident.
+ *
+ * @author YAN DENG
+ *
+ */
+public class MappedLSH {
+
+	public static final int MAGIC = 0x4C534849; // "LSHI"
+	public static final int VERSION = 1;
+	static final int HEADER_SIZE = 48;
+	static final int BAND_ENTRY_SIZE = 40;
+	private static final long CHUNK_SIZE = 1 << 30; // bytes of names per mapping
+
+	private int numDocuments;
+	private int bands;
+	private int r;// rows
+	private LongBuffer[] keys; // [band] sorted keys
+	private IntBuffer[] starts; // [band] start of each key's postings
+	private IntBuffer[] postings; // [band] doc ids, grouped by key
+	private LongBuffer[] docKeys; // [band] key of every document
+	private LongBuffer nameOffsets;
+	private IntBuffer byName; // doc ids sorted by name
+	private ByteBuffer[] names; // CHUNK_SIZE bytes each, a name may span two
+
+	private static final Metrics.Timer QUERY = Metrics.global().timer(Metrics.QUERY);
+	private static final Metrics.Histogram CANDIDATES = Metrics.global().histogram(Metrics.CANDIDATES);
+
+	/**
+	 * Open an index file.
+	 *
+	 * @param file
+	 * @return Returns the read-only index
+	 * @throws IOException
+	 */
+	public static MappedLSH open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return new MappedLSH(raf.getChannel());
+		} finally {
+			raf.close();
+		}
+	}
+
+	private MappedLSH(FileChannel channel) throws IOException {
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_SIZE, channel.size()));
+		if (header.limit() < HEADER_SIZE || header.getInt(0) != MAGIC)
+			throw new IOException("Not an LSH index file.");
+		if (header.getInt(4) != VERSION)
+			throw new IOException("Unsupported LSH index file version " + header.getInt(4) + ".");
+		this.numDocuments = header.getInt(8);
+		this.bands = header.getInt(12);
+		this.r = header.getInt(16);
+		long nameOffsetsOffset = header.getLong(24);
+		long byNameOffset = header.getLong(32);
+		long namesOffset = header.getLong(40);
+
+		ByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE,
+				(long) BAND_ENTRY_SIZE * bands);
+		this.keys = new LongBuffer[bands];
+		this.starts = new IntBuffer[bands];
+		this.postings = new IntBuffer[bands];
+		this.docKeys = new LongBuffer[bands];
+		for (int i = 0; i < bands; i++) {
+			long keysOffset = directory.getLong();
+			long startsOffset = directory.getLong();
+			long postingsOffset = directory.getLong();
+			long docKeysOffset = directory.getLong();
+			int numKeys = directory.getInt();
+			directory.getInt();
+			keys[i] = map(channel, keysOffset, 8L * numKeys).asLongBuffer();
+			starts[i] = map(channel, startsOffset, 4L * (numKeys + 1)).asIntBuffer();
+			postings[i] = map(channel, postingsOffset, 4L * starts[i].get(numKeys)).asIntBuffer();
+			docKeys[i] = map(channel, docKeysOffset, 8L * numDocuments).asLongBuffer();
+		}
+		this.nameOffsets = map(channel, nameOffsetsOffset, 8L * numDocuments).asLongBuffer();
+		this.byName = map(channel, byNameOffset, 4L * numDocuments).asIntBuffer();
+		long namesSize = channel.size() - namesOffset;
+		this.names = new ByteBuffer[(int) ((namesSize + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+		for (int c = 0; c < names.length; c++) {
+			long offset = c * CHUNK_SIZE;
+			names[c] = map(channel, namesOffset + offset, Math.min(CHUNK_SIZE, namesSize - offset));
+		}
+	}
+
+	private static ByteBuffer map(FileChannel channel, long offset, long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+	}
+
+	/**
+	 * Takes name of a document as parameter and returns an array list of names
+	 * of the near duplicate documents(may contain false positive)
+	 *
+	 * @param docName
+	 * @return an array list of names of the near duplicate documents
+	 */
+	public String[] nearDuplicatesOf(String docName) {
+		int doc = fileOrder(docName);
+		if (docName.equals(".DS_Store"))
+			return new String[0]; // not in any bucket
+		long start = QUERY.start();
+		int[] similarDocuments = new int[16];
+		int count = 0;
+		for (int i = 0; i < bands; i++) {
+			int key = findKey(keys[i], docKeys[i].get(doc));
+			if (key < 0)
+				continue;
+			int from = starts[i].get(key);
+			int to = starts[i].get(key + 1);
+			if (count + to - from > similarDocuments.length) {
+				similarDocuments = Arrays.copyOf(similarDocuments,
+						Math.max(2 * similarDocuments.length, count + to - from));
+			}
+			for (int j = from; j < to; j++) {
+				similarDocuments[count++] = postings[i].get(j);
+			}
+		}
+		Arrays.sort(similarDocuments, 0, count);
+		String[] result = new String[count];
+		int numNames = 0;
+		for (int j = 0; j < count; j++) {
+			int s = similarDocuments[j];
+			if (s != doc && (j == 0 || s != similarDocuments[j - 1])) {
+				result[numNames++] = name(s);
+			}
+		}
+		QUERY.stop(start);
+		CANDIDATES.record(numNames);
+		return Arrays.copyOf(result, numNames);
+	}
+
+	/**
+	 *
+	 * @return Returns the number of bands
+	 */
+	public int bands() {
+		return bands;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of rows per band
+	 */
+	public int rows() {
+		return r;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of documents in the index
+	 */
+	public int numDocuments() {
+		return numDocuments;
+	}
+
+	/**
+	 *
+	 * @return Returns the index of the key in the sorted keys, or -1
+	 */
+	private static int findKey(LongBuffer sortedKeys, long key) {
+		int from = 0;
+		int to = sortedKeys.limit() - 1;
+		while (from <= to) {
+			int middle = (from + to) >>> 1;
+			long value = sortedKeys.get(middle);
+			if (value < key) {
+				from = middle + 1;
+			} else if (value > key) {
+				to = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Decode the name of the given document from the mapping.
+	 */
+	private String name(int doc) {
+		long offset = nameOffsets.get(doc);
+		int length = 0;
+		for (int i = 0; i < 4; i++) {
+			length = (length << 8) | (nameByte(offset + i) & 0xFF); // big endian
+		}
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = nameByte(offset + 4 + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 *
+	 * @param position
+	 *            offset in the names region
+	 * @return Returns the byte at the position, from the chunk holding it
+	 */
+	private byte nameByte(long position) {
+		return names[(int) (position / CHUNK_SIZE)].get((int) (position % CHUNK_SIZE));
+	}
+
+	/**
+	 * Return the index of the given file, by binary search over the names.
+	 *
+	 * @param file
+	 * @return the index of the given file
+	 */
+	private int fileOrder(String file) {
+		int from = 0;
+		int to = numDocuments - 1;
+		while (from <= to) {
+			int middle = (from + to) >>> 1;
+			int doc = byName.get(middle);
+			int compare = name(doc).compareTo(file);
+			if (compare < 0) {
+				from = middle + 1;
+			} else if (compare > 0) {
+				to = middle - 1;
+			} else {
+				return doc;
+			}
+		}
+		throw new IllegalArgumentException("File: " + file + " does not exist.");
+	}
+
+	/**
+	 * Print the near duplicate candidates of a document from an index file.
+	 *
+	 * @param args
+	 *            &lt;index file&gt; &lt;name of a document from the
+	 *            collection&gt;
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			throw new IllegalArgumentException(
+					"Invalid arguments, should be: <index file> <name of a document from the collection>");
+		}
+		MappedLSH lsh = MappedLSH.open(new File(args[0]));
+		String[] candidateFiles = lsh.nearDuplicatesOf(args[1]);
+		System.out.println("There are " + candidateFiles.length + " candidate files.");
+		System.out.println(Arrays.toString(candidateFiles));
+	}
+}
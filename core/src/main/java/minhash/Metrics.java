@@ -0,0 +1,493 @@
+package minhash;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A registry of the timers, counters and histograms of the pipeline, by name.
+ * The classes of the pipeline record into the global registry: Corpus the
+ * ingest and vocabulary phases and the documents, tokens and bytes read,
+ * MinHash the signatures, LSH the band hashing, the queries and the
+ * verification of their candidates, with the sizes of the buckets and the
+ * number of candidates per query.
+ *
+ * Recording mostly adds to LongAdders, so threads recording at once hardly
+ * contend, and a timer reads System.nanoTime twice; the metrics are looked up
+ * once and kept in static fields by the classes recording them. The
+ * registry is read with the getters, dumped as JSON, or watched over JMX once
+ * registered as an MBean.
+ *
+ * @author YAN DENG
+ *
+ */
+public class Metrics {
+
+	// phases, timed in nanoseconds
+	public static final String INGEST = "ingest"; // reading and tokenizing
+	public static final String VOCABULARY = "vocabulary"; // term ids
+	public static final String SIGNATURE = "signature";
+	public static final String BAND_HASHING = "bandHashing";
+	public static final String QUERY = "query"; // bucket lookups
+	public static final String VERIFY = "verify"; // scoring the candidates
+
+	// counters
+	public static final String DOCUMENTS = "documents";
+	public static final String TOKENS = "tokens";
+	public static final String BYTES_READ = "bytesRead";
+
+	// histograms
+	public static final String BUCKET_SIZES = "bucketSizes"; // of the built band tables
+	public static final String CANDIDATES = "candidatesPerQuery";
+
+	public static final String OBJECT_NAME = "minhash:type=Metrics";
+
+	private static final Metrics GLOBAL = new Metrics();
+
+	/**
+	 * A count that only grows, until reset.
+	 */
+	public static class Counter {
+		private LongAdder count = new LongAdder();
+
+		public void increment() {
+			count.increment();
+		}
+
+		public void add(long value) {
+			count.add(value);
+		}
+
+		public long get() {
+			return count.sum();
+		}
+
+		void reset() {
+			count.reset();
+		}
+	}
+
+	/**
+	 * The distribution of non-negative values, in bins of powers of 2: bin 0
+	 * holds 0, bin i holds [2^(i-1), 2^i - 1]. Percentiles are the upper end
+	 * of their bin, so they are exact to a factor of 2, enough to tell a
+	 * few giant buckets from many small ones.
+	 */
+	public static class Histogram {
+		private LongAdder[] bins = new LongAdder[65];
+		private LongAdder count = new LongAdder();
+		private LongAdder sum = new LongAdder();
+		private AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+		private AtomicLong max = new AtomicLong();
+
+		Histogram() {
+			for (int i = 0; i < bins.length; i++) {
+				bins[i] = new LongAdder();
+			}
+		}
+
+		/**
+		 *
+		 * @param value
+		 *            non-negative value, negative ones are recorded as 0
+		 */
+		public void record(long value) {
+			value = Math.max(value, 0);
+			bins[64 - Long.numberOfLeadingZeros(value)].increment();
+			count.increment();
+			sum.add(value);
+			long current;
+			while (value < (current = min.get()) && !min.compareAndSet(current, value)) {
+			}
+			while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			}
+		}
+
+		public long count() {
+			return count.sum();
+		}
+
+		public long sum() {
+			return sum.sum();
+		}
+
+		/**
+		 *
+		 * @return Returns the smallest value recorded, 0 if none
+		 */
+		public long min() {
+			return count() == 0 ? 0 : min.get();
+		}
+
+		public long max() {
+			return max.get();
+		}
+
+		public double mean() {
+			long count = count();
+			return count == 0 ? 0 : (double) sum() / count;
+		}
+
+		/**
+		 *
+		 * @param fraction
+		 *            between 0 and 1, e.g. 0.99
+		 * @return Returns the upper end of the bin of the given percentile,
+		 *         at most the largest value recorded
+		 */
+		public long percentile(double fraction) {
+			if (fraction < 0 || fraction > 1)
+				throw new IllegalArgumentException("fraction should range between 0 and 1");
+			long rank = (long) Math.ceil(fraction * count());
+			long seen = 0;
+			for (int i = 0; i < bins.length; i++) {
+				seen += bins[i].sum();
+				if (seen >= rank && seen > 0)
+					return Math.min(upperBound(i), max());
+			}
+			return 0;
+		}
+
+		/**
+		 *
+		 * @return Returns the upper bound of each non-empty bin and its count,
+		 *         in increasing order
+		 */
+		public Map<Long, Long> bins() {
+			Map<Long, Long> bins = new LinkedHashMap<Long, Long>();
+			for (int i = 0; i < this.bins.length; i++) {
+				long count = this.bins[i].sum();
+				if (count > 0)
+					bins.put(upperBound(i), count);
+			}
+			return bins;
+		}
+
+		private static long upperBound(int bin) {
+			return bin == 64 ? Long.MAX_VALUE : (1L << bin) - 1;
+		}
+
+		/**
+		 *
+		 * @param suffix
+		 *            appended to the names of the values, e.g. their unit
+		 * @return Returns the summary of the histogram by name
+		 */
+		Map<String, Number> summary(String suffix) {
+			Map<String, Number> summary = new LinkedHashMap<String, Number>();
+			summary.put("count", count());
+			summary.put("sum" + suffix, sum());
+			summary.put("min" + suffix, min());
+			summary.put("mean" + suffix, mean());
+			summary.put("p50" + suffix, percentile(0.5));
+			summary.put("p90" + suffix, percentile(0.9));
+			summary.put("p99" + suffix, percentile(0.99));
+			summary.put("max" + suffix, max());
+			return summary;
+		}
+
+		void reset() {
+			for (LongAdder bin : bins) {
+				bin.reset();
+			}
+			count.reset();
+			sum.reset();
+			min.set(Long.MAX_VALUE);
+			max.set(0);
+		}
+	}
+
+	/**
+	 * A histogram of durations in nanoseconds:
+	 *
+	 * <pre>
+	 * long start = timer.start();
+	 * ...
+	 * timer.stop(start);
+	 * </pre>
+	 */
+	public static class Timer extends Histogram {
+
+		/**
+		 *
+		 * @return Returns the start time to pass to stop
+		 */
+		public long start() {
+			return System.nanoTime();
+		}
+
+		/**
+		 * Record the time since start.
+		 *
+		 * @param start
+		 * @return Returns the time now, the start of a following interval
+		 */
+		public long stop(long start) {
+			long now = System.nanoTime();
+			record(now - start);
+			return now;
+		}
+	}
+
+	private ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+	private ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+	/**
+	 *
+	 * @return Returns the registry the pipeline records into
+	 */
+	public static Metrics global() {
+		return GLOBAL;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return Returns the timer of the given name, created if there is none
+	 */
+	public synchronized Timer timer(String name) {
+		Timer timer = timers.get(name);
+		if (timer == null) {
+			timer = new Timer();
+			timers.put(name, timer);
+		}
+		return timer;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return Returns the counter of the given name, created if there is none
+	 */
+	public synchronized Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			counter = new Counter();
+			counters.put(name, counter);
+		}
+		return counter;
+	}
+
+	/**
+	 *
+	 * @param name
+	 * @return Returns the histogram of the given name, created if there is
+	 *         none
+	 */
+	public synchronized Histogram histogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			histogram = new Histogram();
+			histograms.put(name, histogram);
+		}
+		return histogram;
+	}
+
+	/**
+	 * Set every metric back to zero. The metrics stay registered, so the
+	 * references held by the recording classes remain valid.
+	 */
+	public void reset() {
+		for (Timer timer : timers.values()) {
+			timer.reset();
+		}
+		for (Counter counter : counters.values()) {
+			counter.reset();
+		}
+		for (Histogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * Every value of every metric, by names like "query.p99Nanos",
+	 * "documents" or "bucketSizes.max", in order of name.
+	 *
+	 * @return Returns the current values by name
+	 */
+	public Map<String, Number> values() {
+		Map<String, Number> values = new TreeMap<String, Number>();
+		for (Map.Entry<String, Timer> timer : timers.entrySet()) {
+			for (Map.Entry<String, Number> value : timer.getValue().summary("Nanos").entrySet()) {
+				values.put(timer.getKey() + "." + value.getKey(), value.getValue());
+			}
+		}
+		for (Map.Entry<String, Counter> counter : counters.entrySet()) {
+			values.put(counter.getKey(), counter.getValue().get());
+		}
+		for (Map.Entry<String, Histogram> histogram : histograms.entrySet()) {
+			for (Map.Entry<String, Number> value : histogram.getValue().summary("").entrySet()) {
+				values.put(histogram.getKey() + "." + value.getKey(), value.getValue());
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Dump the metrics as a JSON object with the timers, in nanoseconds, the
+	 * counters and the histograms, each with its non-empty bins keyed by their
+	 * upper bound.
+	 *
+	 * @return Returns the JSON text
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{\n  \"timers\": {");
+		String separator = "\n";
+		for (Map.Entry<String, Timer> timer : new TreeMap<String, Timer>(timers).entrySet()) {
+			json.append(separator).append("    ").append(quote(timer.getKey())).append(": ");
+			json.append('{');
+			appendFields(json, timer.getValue().summary("Nanos"));
+			json.append('}');
+			separator = ",\n";
+		}
+		json.append("\n  },\n  \"counters\": {");
+		separator = "\n";
+		for (Map.Entry<String, Counter> counter : new TreeMap<String, Counter>(counters).entrySet()) {
+			json.append(separator).append("    ").append(quote(counter.getKey())).append(": ")
+					.append(counter.getValue().get());
+			separator = ",\n";
+		}
+		json.append("\n  },\n  \"histograms\": {");
+		separator = "\n";
+		for (Map.Entry<String, Histogram> histogram : new TreeMap<String, Histogram>(histograms).entrySet()) {
+			json.append(separator).append("    ").append(quote(histogram.getKey())).append(": {");
+			appendFields(json, histogram.getValue().summary(""));
+			json.append(", \"bins\": {");
+			String binSeparator = "";
+			for (Map.Entry<Long, Long> bin : histogram.getValue().bins().entrySet()) {
+				json.append(binSeparator).append(quote(bin.getKey().toString())).append(": ").append(bin.getValue());
+				binSeparator = ", ";
+			}
+			json.append("}}");
+			separator = ",\n";
+		}
+		json.append("\n  }\n}\n");
+		return json.toString();
+	}
+
+	private static void appendFields(StringBuilder json, Map<String, Number> values) {
+		String separator = "";
+		for (Map.Entry<String, Number> value : values.entrySet()) {
+			json.append(separator).append(quote(value.getKey())).append(": ");
+			if (value.getValue() instanceof Double) {
+				json.append(String.format(Locale.ROOT, "%.1f", value.getValue().doubleValue()));
+			} else {
+				json.append(value.getValue());
+			}
+			separator = ", ";
+		}
+	}
+
+	private static String quote(String name) {
+		return "\"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+
+	/**
+	 * Write the JSON dump to the given file.
+	 *
+	 * @param file
+	 * @throws FileNotFoundException
+	 */
+	public void writeJson(File file) throws FileNotFoundException {
+		PrintWriter writer = new PrintWriter(file);
+		try {
+			writer.print(toJson());
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Register the registry with the platform MBean server under
+	 * OBJECT_NAME, e.g. to watch it in JConsole. Every value of values() is a
+	 * read-only attribute, and the operations "json" and "reset" are those of
+	 * the registry. Registering twice does nothing.
+	 *
+	 * @throws JMException
+	 */
+	public void registerMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (!server.isRegistered(name)) {
+			server.registerMBean(new View(), name);
+		}
+	}
+
+	/**
+	 * The JMX view of the registry. Its attributes are read when asked for,
+	 * and metrics created after registering show up as new attributes.
+	 */
+	private class View implements DynamicMBean {
+
+		public Object getAttribute(String attribute) throws AttributeNotFoundException {
+			Number value = values().get(attribute);
+			if (value == null)
+				throw new AttributeNotFoundException(attribute);
+			return value;
+		}
+
+		public AttributeList getAttributes(String[] attributes) {
+			Map<String, Number> values = values();
+			AttributeList list = new AttributeList();
+			for (String attribute : attributes) {
+				if (values.containsKey(attribute))
+					list.add(new Attribute(attribute, values.get(attribute)));
+			}
+			return list;
+		}
+
+		public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+			throw new AttributeNotFoundException("The metrics are read-only.");
+		}
+
+		public AttributeList setAttributes(AttributeList attributes) {
+			return new AttributeList();
+		}
+
+		public Object invoke(String actionName, Object[] params, String[] signature) {
+			if (actionName.equals("json"))
+				return toJson();
+			if (actionName.equals("reset")) {
+				reset();
+				return null;
+			}
+			throw new UnsupportedOperationException("No operation " + actionName + ".");
+		}
+
+		public MBeanInfo getMBeanInfo() {
+			ArrayList<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+			for (Map.Entry<String, Number> value : values().entrySet()) {
+				attributes.add(new MBeanAttributeInfo(value.getKey(), value.getValue().getClass().getName(),
+						value.getKey(), true, false, false));
+			}
+			MBeanOperationInfo[] operations = {
+					new MBeanOperationInfo("json", "The metrics as JSON", null, String.class.getName(),
+							MBeanOperationInfo.INFO),
+					new MBeanOperationInfo("reset", "Set every metric back to zero", null, "void",
+							MBeanOperationInfo.ACTION) };
+			return new MBeanInfo(Metrics.class.getName(), "Metrics of the MinHash pipeline",
+					attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, operations, null);
+		}
+	}
+}
@@ -0,0 +1,897 @@
+package minhash;
+
+import java.io.File;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Construct a K × N minhash matrix that can be used to estimate similarity of
+ * any two documents, where K is the number of random permutations.
+ * 
+ * The hash functions, a HashFamily, are applied to the 64 bit fingerprints of
+ * the terms, not to their ids, and are drawn from the seed alone, so they do
+ * not depend on the vocabulary: documents can be added after the signatures of the
+ * collection were computed, each costing one signature computation.
+ * 
+ * @author YAN DENG
+ *
+ */
+public class MinHash implements Signatures {
+
+	/**
+	 * How the K min hash values of a document are computed.
+	 */
+	public enum Scheme {
+		/**
+		 * K independent hash functions of the term fingerprints, every term
+		 * is hashed K times.
+		 */
+		K_PERMUTATIONS,
+		/**
+		 * One permutation split into K bins, every term is hashed once and
+		 * empty bins are filled by densification.
+		 */
+		ONE_PERMUTATION
+	}
+
+	private Corpus corpus; // the documents, read once
+	private String[] files;
+	private HashMap<String, Integer> docIds; // file name -> index in files
+	private int numPermutations;
+	private int numTerms;
+	private int numDocuments;
+	private Scheme scheme;
+	private HashFamily family; // the k hash functions, one for
+								// ONE_PERMUTATION
+	private boolean[] removed; // tombstones of the removed documents
+	private int numRemoved;
+	private SignatureMatrix minHashMatrix; // one row per document slot, removed
+											// ones included
+	private long[][] bfMatrix; // binary frequency matrix for calculating the
+								// exact similarities, one bit per term; null
+								// for sparse rows
+	private int[][] sparseRows; // term ids of the rows too sparse for a bitset
+	private int[] termCounts; // number of terms of each document
+	private int parallelism; // number of threads building the matrices
+	private ForkJoinPool pool;
+
+	private static final Metrics.Timer SIGNATURE = Metrics.global().timer(Metrics.SIGNATURE);
+
+	/**
+	 * Constructor, initialize a new MinHash instance.
+	 * 
+	 * @param folder
+	 *            The name of a folder containing our document collection for
+	 *            which we wish to construct MinHash matrix
+	 * @param numPermutations
+	 *            Denotes the number of permutations to be used in creating the
+	 *            MinHash matrix
+	 */
+	public MinHash(String folder, int numPermutations) {
+		this(new Corpus(folder), numPermutations);
+	}
+
+	/**
+	 * Constructor, initialize a new MinHash instance whose matrices are built
+	 * by the given number of threads.
+	 * 
+	 * @param folder
+	 *            The name of a folder containing our document collection for
+	 *            which we wish to construct MinHash matrix
+	 * @param numPermutations
+	 *            Denotes the number of permutations to be used in creating the
+	 *            MinHash matrix
+	 * @param parallelism
+	 *            number of threads building the matrices
+	 */
+	public MinHash(String folder, int numPermutations, int parallelism) {
+		this(new Corpus(folder), numPermutations, Scheme.K_PERMUTATIONS, parallelism);
+	}
+
+	/**
+	 * Constructor, initialize a new MinHash instance over an already read
+	 * document collection. The binary frequency matrix and the MinHash matrix
+	 * are built from the corpus on demand, no file is read again.
+	 * 
+	 * @param corpus
+	 *            The document collection for which we wish to construct
+	 *            MinHash matrix
+	 * @param numPermutations
+	 *            Denotes the number of permutations to be used in creating the
+	 *            MinHash matrix
+	 */
+	public MinHash(Corpus corpus, int numPermutations) {
+		this(corpus, numPermutations, Scheme.K_PERMUTATIONS);
+	}
+
+	/**
+	 * Constructor, initialize a new MinHash instance over an already read
+	 * document collection with the given signature scheme.
+	 * 
+	 * @param corpus
+	 *            The document collection for which we wish to construct
+	 *            MinHash matrix
+	 * @param numPermutations
+	 *            Denotes the number of permutations (or bins, for
+	 *            ONE_PERMUTATION) to be used in creating the MinHash matrix
+	 * @param scheme
+	 *            how the min hash values are computed
+	 */
+	public MinHash(Corpus corpus, int numPermutations, Scheme scheme) {
+		this(corpus, numPermutations, scheme, 1);
+	}
+
+	/**
+	 * Constructor, initialize a new MinHash instance over an already read
+	 * document collection with the given signature scheme, whose matrices are
+	 * built by the given number of threads.
+	 * 
+	 * @param corpus
+	 *            The document collection for which we wish to construct
+	 *            MinHash matrix
+	 * @param numPermutations
+	 *            Denotes the number of permutations (or bins, for
+	 *            ONE_PERMUTATION) to be used in creating the MinHash matrix
+	 * @param scheme
+	 *            how the min hash values are computed
+	 * @param parallelism
+	 *            number of threads building the matrices, 1 builds them in
+	 *            the calling thread
+	 */
+	public MinHash(Corpus corpus, int numPermutations, Scheme scheme, int parallelism) {
+		this(corpus, numPermutations, scheme, parallelism, new Random().nextLong());
+	}
+
+	/**
+	 * Constructor, initialize a new MinHash instance whose hash functions are
+	 * derived from the given seed, so that two instances with the same seed
+	 * over the same collection compute the same signatures.
+	 * 
+	 * @param corpus
+	 *            The document collection for which we wish to construct
+	 *            MinHash matrix
+	 * @param numPermutations
+	 *            Denotes the number of permutations (or bins, for
+	 *            ONE_PERMUTATION) to be used in creating the MinHash matrix
+	 * @param scheme
+	 *            how the min hash values are computed
+	 * @param parallelism
+	 *            number of threads building the matrices, 1 builds them in
+	 *            the calling thread
+	 * @param seed
+	 *            seed of the hash functions
+	 */
+	public MinHash(Corpus corpus, int numPermutations, Scheme scheme, int parallelism, long seed) {
+		this(corpus, numPermutations, scheme, HashFamily.Kind.MERSENNE, parallelism, seed);
+	}
+
+	/**
+	 * Constructor, initialize a new MinHash instance whose hash functions are
+	 * drawn from the given family and seed.
+	 * 
+	 * @param corpus
+	 *            The document collection for which we wish to construct
+	 *            MinHash matrix
+	 * @param numPermutations
+	 *            Denotes the number of permutations (or bins, for
+	 *            ONE_PERMUTATION) to be used in creating the MinHash matrix
+	 * @param scheme
+	 *            how the min hash values are computed
+	 * @param family
+	 *            the kind of hash functions
+	 * @param parallelism
+	 *            number of threads building the matrices, 1 builds them in
+	 *            the calling thread
+	 * @param seed
+	 *            seed of the hash functions
+	 */
+	public MinHash(Corpus corpus, int numPermutations, Scheme scheme, HashFamily.Kind family, int parallelism,
+			long seed) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism should be greater or equal to 1.");
+		this.corpus = corpus;
+		this.scheme = scheme;
+		this.parallelism = parallelism;
+		this.files = corpus.docNames();
+		this.docIds = new HashMap<String, Integer>();
+		for (int i = 0; i < files.length; i++) {
+			docIds.put(files[i], i);
+		}
+		this.removed = new boolean[files.length];
+		this.numPermutations = numPermutations;
+		this.numDocuments = files.length;
+		System.out.println("Number of files:" + numDocuments);// include
+																// .DS_Store if
+																// using Mac
+		System.out.printf("Number of files read: %d (%d bytes, %.1f MB/s)%n", corpus.filesRead(), corpus.bytesRead(),
+				corpus.throughput());
+		this.numTerms = corpus.numTerms();
+		System.out.println("Number of terms: " + numTerms);
+		this.family = HashFamily.create(family, scheme == Scheme.ONE_PERMUTATION ? 1 : numPermutations, seed);
+	}
+
+	/**
+	 * 
+	 * @return Returns an array of String consisting of all the names of files
+	 *         in the document collection, without the removed ones
+	 */
+	public String[] allDocs() {
+		return live(files);
+	}
+
+	/**
+	 * Read a new document into the collection and compute its signature. The
+	 * signatures of the other documents stay valid, the MinHash matrix, if
+	 * computed, gets the new row, and the binary frequency matrix is dropped
+	 * since the vocabulary may have grown.
+	 * 
+	 * @param file
+	 * @return Returns the MinHash signature of the new document
+	 */
+	public int[] addDocument(File file) {
+		if (docIds.containsKey(file.getName()))
+			throw new IllegalArgumentException("File " + file.getName() + " already exists.");
+		int doc = corpus.addDocument(file);
+		if (doc != numDocuments)
+			throw new IllegalStateException("The corpus has documents this MinHash does not know.");
+		if (numDocuments == files.length) {
+			int capacity = 2 * files.length;
+			files = Arrays.copyOf(files, capacity);
+			removed = Arrays.copyOf(removed, capacity);
+		}
+		files[doc] = file.getName();
+		docIds.put(files[doc], doc);
+		numDocuments++;
+		numTerms = corpus.numTerms();
+		bfMatrix = null;
+		int[] signature = minHashSig(doc);
+		if (minHashMatrix != null)
+			minHashMatrix.add(signature);
+		return signature.clone();
+	}
+
+	/**
+	 * Remove a document: its name is forgotten at once and it is left out of
+	 * allDocs and of the matrices, while its slot stays as a tombstone until
+	 * the collection is compacted, once a quarter of its documents are
+	 * removed.
+	 * 
+	 * @param fileName
+	 */
+	public void removeDocument(String fileName) {
+		int doc = fileOrder(fileName);
+		docIds.remove(fileName);
+		removed[doc] = true;
+		numRemoved++;
+		if (4L * numRemoved > numDocuments) {
+			compact();
+		}
+	}
+
+	/**
+	 * Drop the removed documents: the remaining ones are renumbered in their
+	 * order, the MinHash matrix keeps only their rows, and the corpus frees
+	 * their encoded terms. The binary frequency matrix is dropped and
+	 * computed again when needed.
+	 */
+	public void compact() {
+		boolean[] keep = live();
+		int count = numDocuments - numRemoved;
+		corpus.compact(keep);
+		this.files = corpus.docNames();
+		this.docIds = new HashMap<String, Integer>();
+		for (int i = 0; i < count; i++) {
+			docIds.put(files[i], i);
+		}
+		if (minHashMatrix != null)
+			this.minHashMatrix = minHashMatrix.select(keep, count);
+		this.bfMatrix = null;
+		this.sparseRows = null;
+		this.termCounts = null;
+		this.numDocuments = count;
+		this.removed = new boolean[count];
+		this.numRemoved = 0;
+	}
+
+	/**
+	 * 
+	 * @return Returns the number of removed documents whose slots are kept
+	 *         until the next compaction
+	 */
+	public int numRemoved() {
+		return numRemoved;
+	}
+
+	/**
+	 * 
+	 * @return Returns the rows of the documents not removed
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T[] live(T[] rows) {
+		if (numRemoved == 0)
+			return Arrays.copyOf(rows, numDocuments);
+		T[] live = (T[]) Array.newInstance(rows.getClass().getComponentType(), numDocuments - numRemoved);
+		int count = 0;
+		for (int i = 0; i < numDocuments; i++) {
+			if (!removed[i])
+				live[count++] = rows[i];
+		}
+		return live;
+	}
+
+	/**
+	 * 
+	 * @param fileName
+	 * @return Returns the binary Frequency of the given file with respect to
+	 *         the whole terms, packed 64 terms per long: term j is bit j%64 of
+	 *         word j/64
+	 */
+	public long[] binaryFreq(String fileName) {
+		return binaryFreq(corpus.terms(fileOrder(fileName)));
+	}
+
+	/**
+	 * 
+	 * @param terms
+	 *            the term ids of a document
+	 * @return Returns the packed binary Frequency of the document with respect
+	 *         to the whole terms
+	 */
+	private long[] binaryFreq(int[] terms) {
+		long[] binaryFreq = new long[(numTerms + 63) >>> 6];
+		for (int termId : terms) {
+			binaryFreq[termId >>> 6] |= 1L << termId;
+		}
+		return binaryFreq;
+	}
+
+	/**
+	 * Calculate the binary frequency matrix for all documents. A row is
+	 * packed into numTerms/64 longs, unless the document has fewer than
+	 * numTerms/32 terms: then its term ids take less memory than the bitset,
+	 * the row is null and the ids are kept instead.
+	 * 
+	 * @return the binary frequency matrix
+	 */
+	public long[][] binaryFreqMatrix() {
+		final long[][] matrix = new long[numDocuments][];
+		final int[][] sparse = new int[numDocuments][];
+		final int[] counts = new int[numDocuments];
+		forEachDocument(new RowBuilder() {
+			public void build(int doc) {
+				if (removed[doc])
+					return;
+				int[] terms = corpus.terms(doc);
+				counts[doc] = terms.length;
+				if ((long) terms.length * 32 < numTerms) {
+					sparse[doc] = terms;
+				} else {
+					matrix[doc] = binaryFreq(terms);
+				}
+			}
+		});
+		sparseRows = sparse;
+		termCounts = counts;
+		bfMatrix = matrix;
+		return live(bfMatrix);
+	}
+
+	/**
+	 * Calculate the exact Jaccard Simility of the two given files by the
+	 * formula: Intersection/Union. Once the binary frequency matrix is built,
+	 * the intersection of two bitset rows is counted word by word with
+	 * Long.bitCount, a sparse row probes the bits of a bitset row and two
+	 * sparse rows are merged. Without the matrix the sorted term ids of the
+	 * two files are merged.
+	 * 
+	 * @param file1
+	 * @param file2
+	 * @return Returns the exact Jaccard Similarity of the given two files.
+	 */
+	public double exactJaccard(String file1, String file2) {
+		int doc1 = fileOrder(file1);
+		int doc2 = fileOrder(file2);
+		int intersection;
+		int union;
+		if (bfMatrix == null) {
+			int[] terms1 = corpus.terms(doc1);
+			int[] terms2 = corpus.terms(doc2);
+			intersection = intersection(terms1, terms2);
+			union = terms1.length + terms2.length - intersection;
+		} else {
+			long[] bits1 = bfMatrix[doc1];
+			long[] bits2 = bfMatrix[doc2];
+			if (bits1 != null && bits2 != null) {
+				intersection = 0;
+				for (int i = 0; i < bits1.length; i++) {
+					intersection += Long.bitCount(bits1[i] & bits2[i]);
+				}
+			} else if (bits1 != null) {
+				intersection = intersection(sparseRows[doc2], bits1);
+			} else if (bits2 != null) {
+				intersection = intersection(sparseRows[doc1], bits2);
+			} else {
+				intersection = intersection(sparseRows[doc1], sparseRows[doc2]);
+			}
+			union = termCounts[doc1] + termCounts[doc2] - intersection;
+		}
+		// System.out.println("File1: " + file1 + ", File2: " + file2 + ",
+		// intersection: " + intersection + ", union: "
+		// + union + ",exactJaccard: " + ((double) intersection) / union);
+		return ((double) intersection) / union;
+	}
+
+	/**
+	 * 
+	 * @param terms1
+	 *            sorted term ids
+	 * @param terms2
+	 *            sorted term ids
+	 * @return Returns the number of term ids in both arrays
+	 */
+	private static int intersection(int[] terms1, int[] terms2) {
+		int intersection = 0;
+		int i = 0;
+		int j = 0;
+		while (i < terms1.length && j < terms2.length) {
+			if (terms1[i] == terms2[j]) {
+				intersection++;
+				i++;
+				j++;
+			} else if (terms1[i] < terms2[j]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return intersection;
+	}
+
+	/**
+	 * 
+	 * @param terms
+	 *            term ids
+	 * @param bits
+	 *            packed binary frequency
+	 * @return Returns the number of term ids whose bit is set
+	 */
+	private static int intersection(int[] terms, long[] bits) {
+		int intersection = 0;
+		for (int termId : terms) {
+			intersection += (int) (bits[termId >>> 6] >>> termId) & 1;
+		}
+		return intersection;
+	}
+
+	/**
+	 * Calculate the min hash value for each permutation, i.e. the smallest
+	 * 32 bit hash of the fingerprint of any term of the document, and return
+	 * the values in an array. Only the terms of the document are hashed. A
+	 * document without terms gets -1, i.e. 2^32-1.
+	 * 
+	 * @param fileName
+	 * @return Returns the MinHash signature (an array of int) of the given
+	 *         document
+	 */
+	public int[] minHashSig(String fileName) {
+		return minHashSig(fileOrder(fileName));
+	}
+
+	/**
+	 * 
+	 * @param doc
+	 *            index of the document in the files array
+	 * @return Returns the MinHash signature of the given document
+	 */
+	private int[] minHashSig(int doc) {
+		int[] terms = corpus.terms(doc);
+		long[] fingerprints = new long[terms.length];
+		for (int j = 0; j < terms.length; j++) {
+			fingerprints[j] = corpus.termHash(terms[j]);
+		}
+		return signature(fingerprints, scheme, numPermutations, family);
+	}
+
+	/**
+	 * Compute the MinHash signature of a text that need not be part of the
+	 * collection, e.g. to query an LSH index with it. The text is tokenized
+	 * like the documents and hashed with the same hash functions, nothing is
+	 * added to the collection.
+	 * 
+	 * @param text
+	 * @return Returns the MinHash signature of the text
+	 */
+	public int[] signatureOf(String text) {
+		return signature(corpus.termHashes(text), scheme, numPermutations, family);
+	}
+
+	@Override
+	public int[] runnerUpsOf(String text) {
+		return runnerUps(corpus.termHashes(text), scheme, numPermutations, family);
+	}
+
+	/**
+	 * 
+	 * @param fileName
+	 * @return Returns the runner-ups of the min hash values of the given
+	 *         document, for multi-probe LSH
+	 */
+	public int[] runnerUps(String fileName) {
+		int[] terms = corpus.terms(fileOrder(fileName));
+		long[] fingerprints = new long[terms.length];
+		for (int j = 0; j < terms.length; j++) {
+			fingerprints[j] = corpus.termHash(terms[j]);
+		}
+		return runnerUps(fingerprints, scheme, numPermutations, family);
+	}
+
+	/**
+	 * Compute a signature from the fingerprints of a document's terms.
+	 * 
+	 * @param fingerprints
+	 *            fingerprints of the distinct terms of the document
+	 * @param scheme
+	 * @param numPermutations
+	 *            length of the signature
+	 * @param family
+	 *            the hash functions, one for ONE_PERMUTATION
+	 * @return Returns the MinHash signature
+	 */
+	static int[] signature(long[] fingerprints, Scheme scheme, int numPermutations, HashFamily family) {
+		long start = SIGNATURE.start();
+		int[] signature = scheme == Scheme.ONE_PERMUTATION
+				? onePermutationSig(fingerprints, numPermutations, family)
+				: kPermutationsSig(fingerprints, numPermutations, family);
+		SIGNATURE.stop(start);
+		return signature;
+	}
+
+	/**
+	 * 
+	 * @return Returns the signature of K independent hash functions
+	 */
+	private static int[] kPermutationsSig(long[] fingerprints, int numPermutations, HashFamily family) {
+		long[] minimums = new long[numPermutations];
+		Arrays.fill(minimums, 0xffffffffL);
+		for (long fingerprint : fingerprints) {
+			family.minimize(fingerprint, minimums);
+		}
+		int[] signature = new int[numPermutations];
+		for (int i = 0; i < numPermutations; i++) {
+			signature[i] = (int) minimums[i];
+		}
+		return signature;
+	}
+
+	/**
+	 * One permutation hashing: every term fingerprint is hashed once by the
+	 * family's single function, the 32 bit hash chooses one of the K bins by
+	 * its upper bits and is kept if it is the smallest of its bin. A bin no
+	 * term fell into borrows the value of the first non-empty bin on its own
+	 * pseudo random probe sequence (optimal densification), which is the same
+	 * for every document so equal bins stay comparable. A document without
+	 * terms gets -1 in every bin.
+	 * 
+	 * @param fingerprints
+	 *            the fingerprints of the terms of the document
+	 * @param numPermutations
+	 *            number of bins
+	 * @param family
+	 * @return Returns the densified one permutation signature
+	 */
+	private static int[] onePermutationSig(long[] fingerprints, int numPermutations, HashFamily family) {
+		int[] signature = new int[numPermutations];
+		Arrays.fill(signature, -1);
+		if (fingerprints.length == 0)
+			return signature;
+		long[] minimums = new long[numPermutations];
+		Arrays.fill(minimums, Long.MAX_VALUE);
+		for (long fingerprint : fingerprints) {
+			long hash = family.hash(0, fingerprint);
+			int bin = (int) ((hash * numPermutations) >>> 32);
+			if (hash < minimums[bin]) {
+				minimums[bin] = hash;
+			}
+		}
+		for (int i = 0; i < numPermutations; i++) {
+			signature[i] = (int) minimums[donor(i, minimums, family.seed())];
+		}
+		return signature;
+	}
+
+	/**
+	 * Optimal densification: an empty bin takes the value of the first
+	 * non-empty bin of its own random sequence of bins.
+	 * 
+	 * @param bin
+	 * @param minimums
+	 *            smallest hash of each bin, Long.MAX_VALUE if empty
+	 * @param seed
+	 * @return Returns the bin itself if it is not empty, else the bin whose
+	 *         value it takes
+	 */
+	private static int donor(int bin, long[] minimums, long seed) {
+		if (minimums[bin] != Long.MAX_VALUE)
+			return bin;
+		int numPermutations = minimums.length;
+		for (long attempt = 0;; attempt++) {
+			long hash = Helper.mix64(~seed ^ ((long) bin << 32 | attempt));
+			int donor = (int) (((hash >>> 32) * numPermutations) >>> 32);
+			if (minimums[donor] != Long.MAX_VALUE)
+				return donor;
+		}
+	}
+
+	/**
+	 * Compute the runner-up of every min hash value of a signature: the
+	 * second smallest hash of the function (or of the bin, for
+	 * ONE_PERMUTATION, and of the donor bin for an empty one). A similar
+	 * document missing the term of the minimum likely has the runner-up
+	 * instead, which is what multi-probe LSH probes for.
+	 * 
+	 * @param fingerprints
+	 *            distinct fingerprints of the terms of the document
+	 * @param scheme
+	 * @param numPermutations
+	 * @param family
+	 * @return Returns the runner-up of each value of the signature, or the
+	 *         value itself if the function saw a single distinct hash
+	 */
+	static int[] runnerUps(long[] fingerprints, Scheme scheme, int numPermutations, HashFamily family) {
+		int size = scheme == Scheme.ONE_PERMUTATION ? numPermutations : family.size();
+		long[] minimums = new long[size];
+		long[] seconds = new long[size];
+		Arrays.fill(minimums, Long.MAX_VALUE);
+		Arrays.fill(seconds, Long.MAX_VALUE);
+		for (long fingerprint : fingerprints) {
+			if (scheme == Scheme.ONE_PERMUTATION) {
+				long hash = family.hash(0, fingerprint);
+				keepTwoSmallest(hash, (int) ((hash * numPermutations) >>> 32), minimums, seconds);
+				continue;
+			}
+			for (int i = 0; i < size; i++) {
+				keepTwoSmallest(family.hash(i, fingerprint), i, minimums, seconds);
+			}
+		}
+		int[] runnerUps = new int[numPermutations];
+		for (int i = 0; i < numPermutations; i++) {
+			int bin = i;
+			if (scheme == Scheme.ONE_PERMUTATION) {
+				if (fingerprints.length == 0) {
+					runnerUps[i] = -1;
+					continue;
+				}
+				bin = donor(i, minimums, family.seed());
+			}
+			long runnerUp = seconds[bin] != Long.MAX_VALUE ? seconds[bin] : minimums[bin];
+			runnerUps[i] = runnerUp == Long.MAX_VALUE ? -1 : (int) runnerUp;
+		}
+		return runnerUps;
+	}
+
+	private static void keepTwoSmallest(long hash, int i, long[] minimums, long[] seconds) {
+		if (hash < minimums[i]) {
+			seconds[i] = minimums[i];
+			minimums[i] = hash;
+		} else if (hash > minimums[i] && hash < seconds[i]) {
+			seconds[i] = hash;
+		}
+	}
+
+	/**
+	 * Estimate and returns the Jaccard similarity of documents file1 and file2
+	 * by comparing the MinHash signatures of file1 and file2
+	 * 
+	 * @param file1
+	 * @param file2
+	 * @return the jaccard similarity between file1 and file2
+	 */
+	public double approximateJaccard(String file1, String file2) {
+		if (minHashMatrix != null)
+			return minHashMatrix.approximateJaccard(fileOrder(file1), fileOrder(file2));
+		int[] sig1 = minHashSig(file1);
+		int[] sig2 = minHashSig(file2);
+		// System.out.println("File1: " + file1 + ", File2: " + file2 +
+		// ",approxJaccard: "
+		// + approximateJaccard(sig1, sig2));
+		return approximateJaccard(sig1, sig2);
+	}
+
+	/**
+	 * Estimate the Jaccard similarity of two documents from their MinHash
+	 * signatures: the fraction of permutations with equal min hash values.
+	 * 
+	 * @param sig1
+	 * @param sig2
+	 * @return the estimated jaccard similarity
+	 */
+	public static double approximateJaccard(int[] sig1, int[] sig2) {
+		int count = EqualityCounter.instance().count(sig1, 0, sig2, 0, sig1.length);
+		return ((double) count) / sig1.length;
+	}
+
+	/**
+	 * 
+	 * @return Returns the MinHash Matrix of the collection, in the order of
+	 *         allDocs.
+	 */
+	public int[][] minHashMatrix() {
+		return signatureMatrix().toArray();
+	}
+
+	/**
+	 * Compute the signatures of all documents into one flat matrix, or
+	 * reuse it if they were computed before.
+	 * 
+	 * @return Returns a copy of the MinHash Matrix of the collection, in the
+	 *         order of allDocs
+	 */
+	@Override
+	public SignatureMatrix signatureMatrix() {
+		if (minHashMatrix == null) {
+			final SignatureMatrix matrix = new SignatureMatrix(numPermutations, numDocuments);
+			forEachDocument(new RowBuilder() {
+				public void build(int doc) {
+					if (!removed[doc] && !files[doc].equals(".DS_Store"))
+						matrix.set(doc, minHashSig(doc));
+				}
+			});
+			minHashMatrix = matrix;
+		}
+		return minHashMatrix.select(live(), numDocuments - numRemoved);
+	}
+
+	/**
+	 * 
+	 * @return Returns for every document slot whether it is not removed
+	 */
+	private boolean[] live() {
+		boolean[] live = new boolean[numDocuments];
+		for (int i = 0; i < numDocuments; i++) {
+			live[i] = !removed[i];
+		}
+		return live;
+	}
+
+	/**
+	 * Builds the row of one document.
+	 */
+	private interface RowBuilder {
+		void build(int doc);
+	}
+
+	/**
+	 * Build the rows of all documents, in the calling thread or split among
+	 * the threads of the pool. Every row only depends on its own document and
+	 * is stored at the document's index, so the result does not depend on the
+	 * number of threads. Each thread decodes one document at a time, so at
+	 * most parallelism documents are in flight.
+	 * 
+	 * @param builder
+	 */
+	private void forEachDocument(RowBuilder builder) {
+		if (parallelism == 1) {
+			for (int i = 0; i < numDocuments; i++) {
+				builder.build(i);
+			}
+			return;
+		}
+		if (pool == null) {
+			pool = new ForkJoinPool(parallelism);
+		}
+		pool.invoke(new RowTask(builder, 0, numDocuments));
+	}
+
+	/**
+	 * Builds the rows [from,to), splitting the range in halves until it is
+	 * small enough.
+	 */
+	private static class RowTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private static final int ROWS_PER_TASK = 16;
+		private RowBuilder builder;
+		private int from;
+		private int to;
+
+		RowTask(RowBuilder builder, int from, int to) {
+			this.builder = builder;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= ROWS_PER_TASK) {
+				for (int i = from; i < to; i++) {
+					builder.build(i);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RowTask(builder, from, middle), new RowTask(builder, middle, to));
+		}
+	}
+
+	/**
+	 * 
+	 * @return Returns the number of terms in the document collection
+	 */
+	public int numTerms() {
+		return numTerms;
+	}
+
+	/**
+	 * 
+	 * @return Returns the number of permutations used to construct the MinHash
+	 *         matrix
+	 */
+	public int numPermutations() {
+		return numPermutations;
+	}
+
+	/**
+	 * 
+	 * @return Returns the number of threads building the matrices
+	 */
+	public int parallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * 
+	 * @return Returns the seed of the hash functions
+	 */
+	public long seed() {
+		return family.seed();
+	}
+
+	/**
+	 * 
+	 * @return Returns the hash functions
+	 */
+	public HashFamily family() {
+		return family;
+	}
+
+	/**
+	 * 
+	 * @return Returns the shingles the documents are split into
+	 */
+	public Tokenizer.Shingles shingles() {
+		return corpus.shingles();
+	}
+
+	/**
+	 * 
+	 * @return Returns the number of terms or characters of a shingle
+	 */
+	public int shingleSize() {
+		return corpus.shingleSize();
+	}
+
+	/**
+	 * 
+	 * @return Returns the scheme the min hash values are computed with
+	 */
+	public Scheme scheme() {
+		return scheme;
+	}
+
+	/**
+	 * Return the index of the given file in the files array
+	 * 
+	 * @param file
+	 * @return the index of the given file in the files array
+	 */
+	private int fileOrder(String file) {
+		Integer index = docIds.get(file);
+		if (index == null) {
+			throw new IllegalArgumentException("File " + file + " does not exist.");
+		}
+		return index;
+	}
+}
@@ -1,3 +1,5 @@
+package minhash;
+
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
@@ -12,9 +14,9 @@ import java.io.PrintWriter;
 public class MinHashAccuracy {
 
 	public static void main(String[] args) {
-		if (args.length != 3) {
+		if (args.length != 3 && args.length != 4) {
 			throw new IllegalArgumentException(
-					"Invalid arguments, should be: <foldername> <number of permutations> <error parameter>");
+					"Invalid arguments, should be: <foldername> <number of permutations> <error parameter> [<b>]");
 		}
 
 		String folderName = args[0].trim();
@@ -28,11 +30,20 @@ public class MinHashAccuracy {
 			throw new IllegalArgumentException("error parameter should range between 0 and 1");
 		}
 
+		int b = args.length == 4 ? Integer.parseInt(args[3]) : 0; // bits kept by
+																	// b-bit MinHash
+		if (args.length == 4 && (b < 1 || b > 8)) {
+			throw new IllegalArgumentException("b should range between 1 and 8.");
+		}
+
 		MinHash test = new MinHash(folderName, k);
 		test.binaryFreqMatrix();
-		test.minHashMatrix();
+		int[][] minHashMatrix = test.minHashMatrix();
 		String[] files = test.allDocs();
 		execute(test, files, epsilon);
+		if (b > 0) {
+			executeBBit(test, new BBitMinHash(minHashMatrix, files, b), files, epsilon);
+		}
 		
 		/*
 		 * For each of k=400, 600, 800, and epsilon=0.04, 0.07, 0.09, run the test 10 times and output the results.
@@ -70,14 +81,17 @@ public class MinHashAccuracy {
 		int count004 = 0;
 		int count007 = 0;
 		int count009 = 0;
+		SignatureMatrix minHashMatrix = minHash.signatureMatrix();
+		double[] similarities = new double[files.length];
 		for (int i = 0; i < files.length; i++) {
 			String file1 = files[i];
 			if (file1.equals(".DS_Store"))
 				continue;
+			minHashMatrix.approximateJaccard(i, i + 1, files.length, similarities);
 			for (int j = i + 1; j < files.length; j++) {
 				String file2 = files[j];
 				double exactJaccard = minHash.exactJaccard(file1, file2);
-				double approxJaccard = minHash.approximateJaccard(file1, file2);
+				double approxJaccard = similarities[j - i - 1];
 				if (Math.abs(exactJaccard - approxJaccard) > epsilon) {
 					count++;
 				}
@@ -96,4 +110,35 @@ public class MinHashAccuracy {
 		String result=minHash.numPermutations()+";"+count004+";"+count007+";"+count009+"\n";
 		return result;
 	}
+
+	/**
+	 * Same test for the b-bit estimate.
+	 * @param minHash
+	 * @param bBit
+	 * @param files
+	 * @param epsilon
+	 */
+	private static void executeBBit(MinHash minHash, BBitMinHash bBit, String[] files, double epsilon) {
+		int count = 0;
+		double sum = 0;
+		int pairs = 0;
+		for (int i = 0; i < files.length; i++) {
+			String file1 = files[i];
+			if (file1.equals(".DS_Store"))
+				continue;
+			for (int j = i + 1; j < files.length; j++) {
+				String file2 = files[j];
+				double error = bBit.approximateJaccard(file1, file2) - minHash.exactJaccard(file1, file2);
+				if (Math.abs(error) > epsilon) {
+					count++;
+				}
+				sum += error;
+				pairs++;
+			}
+		}
+		System.out.println("b-bit MinHash, b = " + bBit.b() + ", " + bBit.rowSize() + " bytes per document instead of "
+				+ 4 * minHash.numPermutations());
+		System.out.println("Number of pairs |exactJac-bBitJac|>given error parameter: " + count);
+		System.out.println("Mean error of the b-bit estimate: " + sum / pairs);
+	}
 }
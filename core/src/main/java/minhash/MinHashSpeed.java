@@ -1,3 +1,5 @@
+package minhash;
+
 /**
  * This class tests whether it is faster to estimate Jaccard Similarities using
  * MinHash matrix than to compute the similarities exactly.
@@ -7,8 +9,9 @@
  */
 public class MinHashSpeed {
 	public static void main(String[] args) throws IllegalAccessException {
-		if (args.length != 2) {
-			throw new IllegalArgumentException("Invalid arguments, should be: <foldername> <number of permutations>");
+		if (args.length != 2 && args.length != 3) {
+			throw new IllegalArgumentException(
+					"Invalid arguments, should be: <foldername> <number of permutations> [<parallelism>]");
 		}
 
 		String folderName = args[0].trim();
@@ -17,9 +20,15 @@ public class MinHashSpeed {
 			throw new IllegalArgumentException("Number of permutation should be greater or equal to 1.");
 		}
 
-		MinHash test = new MinHash(folderName, k);
+		int parallelism = args.length == 3 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism should be greater or equal to 1.");
+		}
+
+		MinHash test = new MinHash(folderName, k, parallelism);
 		String[] files = test.allDocs();
 		System.out.println("Number of Permutations: " + k);
+		System.out.println("Parallelism: " + parallelism);
 		System.out.println();
 		Helper timer1 = new Helper();
 		double[][] exactJacMatrix;
@@ -51,7 +60,7 @@ public class MinHashSpeed {
 		timer1.startTimer();
 		test.binaryFreqMatrix();
 		timer1.stopTimer();
-		System.out.println("It takes " + timer1.getTime() / 1000 + " seconds to create the binary Frequency Matrix.");
+		System.out.printf("It takes %.3f seconds to create the binary Frequency Matrix.%n", timer1.getSeconds());
 		timer1.startTimer();
 		exactJacMatrix = new double[files.length][files.length];
 		for (int i = 0; i < files.length; i++) {
@@ -62,8 +71,7 @@ public class MinHashSpeed {
 			}
 		}
 		timer1.stopTimer();
-		System.out.println("Mission complete. It takes " + timer1.getTime() / 1000
-				+ " seconds to compute the exact similarities.");
+		System.out.printf("Mission complete. It takes %.3f seconds to compute the exact similarities.%n", timer1.getSeconds());
 		System.out.println();
 
 		/*
@@ -72,21 +80,20 @@ public class MinHashSpeed {
 		Helper timer2 = new Helper();
 		System.out.println("Start to compute the approximate similarities......");
 		timer2.startTimer();
-		test.minHashMatrix();
+		SignatureMatrix minHashMatrix = test.signatureMatrix();
 		timer2.stopTimer();
-		System.out.println("It takes " + timer2.getTime() / 1000 + " seconds to create the MinHash Matrix.");
+		System.out.printf("It takes %.3f seconds to create the MinHash Matrix.%n", timer2.getSeconds());
+		System.out.println("Vector API: " + (SignatureMatrix.vectorized() ? "yes" : "no"));
 		timer2.startTimer();
 		double[][] approxJacMatrix = new double[files.length][files.length];
+		double[] similarities = new double[files.length];
 		for (int i = 0; i < files.length; i++) {
-			String file1 = files[i];
-			for (int j = i + 1; j < files.length; j++) {
-				String file2 = files[j];
-				approxJacMatrix[i][j] = test.approximateJaccard(file1, file2);
-			}
+			// row i against the block of all rows after it
+			minHashMatrix.approximateJaccard(i, i + 1, files.length, similarities);
+			System.arraycopy(similarities, 0, approxJacMatrix[i], i + 1, files.length - i - 1);
 		}
 		timer2.stopTimer();
-		System.out.println("Mission complete. It takes " + timer2.getTime() / 1000
-				+ " seconds to compute the approximate similarities.");
+		System.out.printf("Mission complete. It takes %.3f seconds to compute the approximate similarities.%n", timer2.getSeconds());
 	}
 
 }
@@ -0,0 +1,220 @@
+package minhash;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Random;
+
+import javax.management.JMException;
+
+/**
+ * This class puts together MinHash and LSH to detect near duplicates in a
+ * document collection.
+ * 
+ * @author YAN
+ *
+ */
+public class NearDuplicates {
+
+	private static final int SAMPLE_ROWS = 64; // rows BandTuner scores against
+												// all others
+	private static final double FALSE_NEGATIVES = 0.05; // budget of the tuner
+
+	private static final Metrics.Timer VERIFY = Metrics.global().timer(Metrics.VERIFY);
+
+	/**
+	 * Finds the near duplicates of a document, or dedupes the collection. With
+	 * -Dminhash.jmx=true the metrics are registered as an MBean for the run,
+	 * with -Dminhash.metrics=&lt;file&gt; they are written to the file as JSON
+	 * at the end.
+	 * 
+	 * @param args
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 5 && args.length != 6) {
+			throw new IllegalArgumentException(
+					"Invalid arguments. Should be: <folder name | signature file> <number of permutations> <number of bands | auto> <similarity threshold> <name of a document from the collection | -all> [<parallelism>]");
+		}
+
+		String folderName = args[0].trim();
+		int numPermutations = Integer.parseInt(args[1]);// number of
+														// permutations
+		if (numPermutations < 1) {
+			throw new IllegalArgumentException("Number of permutations should be greater or equal to 1.");
+		}
+		boolean tune = args[2].equals("auto"); // choose the bands from the
+												// signatures
+		int bands = tune ? numPermutations : Integer.parseInt(args[2]);
+		if (bands < 1 || bands > numPermutations) {
+			throw new IllegalArgumentException(
+					"Number of bands should be greater or equal to 1 and less or equal to number of permutations.");
+		}
+
+		double threshold = Double.parseDouble(args[3]);
+		if (threshold < 0 || threshold > 1) {
+			throw new IllegalArgumentException("threshold should range between 0 and 1");
+		}
+		String fileName = args[4];
+		int parallelism = args.length == 6 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism should be greater or equal to 1.");
+		}
+
+		if (Boolean.getBoolean("minhash.jmx")) {
+			try {
+				Metrics.global().registerMBean();
+			} catch (JMException e) {
+				e.printStackTrace();
+			}
+		}
+
+		Signatures minHash;
+		if (new File(folderName).isFile()) {
+			// signatures written by SignatureStore, nothing to read or hash
+			minHash = SignatureStore.open(new File(folderName));
+			if (minHash.numPermutations() != numPermutations) {
+				throw new IllegalArgumentException(
+						"The signature file holds " + minHash.numPermutations() + " permutations per document.");
+			}
+		} else {
+			minHash = new MinHash(folderName, numPermutations, parallelism);
+		}
+		SignatureMatrix minHashMatrix = minHash.signatureMatrix();
+		if (tune) {
+			bands = tune(minHashMatrix, threshold, fileName.equals("-all"));
+		}
+		if (fileName.equals("-all")) {
+			executeAll(minHash, minHashMatrix, bands, threshold, parallelism, new File("nearDuplicate_clusters.txt"));
+		} else {
+			execute(minHash, minHashMatrix, numPermutations, bands, threshold, fileName);
+		}
+		String metricsFile = System.getProperty("minhash.metrics");
+		if (metricsFile != null) {
+			Metrics.global().writeJson(new File(metricsFile));
+			System.out.println("Metrics are written to " + metricsFile + ".");
+		}
+
+		/*
+		 * Randomly pick 20 files, run with the bands 10, 25, 50, 100 and output
+		 * the result
+		 */
+//		File outputFile = new File("nearDuplicate_result.txt");
+//		try {
+//			PrintWriter writer = new PrintWriter(outputFile);
+//			writer.append(
+//					"FileName\\Number of Bands;10 Candidate;10 Similar;25 Candidate;25Similar;50 Candidate;50 Similar;100 Candidate;100 Similar\n");
+//			for (int i = 0; i < 20; i++) {
+//				Random ran = new Random();
+//				int index = ran.nextInt(1000);
+//				String testFile = "space-" + index + ".txt";
+//				writer.append(testFile + ";" + execute(minHash, minHashMatrix, numPermutations, 10, threshold, testFile) + ";");
+//				writer.append(execute(minHash, minHashMatrix, numPermutations, 25, threshold, testFile) + ";");
+//				writer.append(execute(minHash, minHashMatrix, numPermutations, 50, threshold, testFile) + ";");
+//				writer.append(execute(minHash, minHashMatrix, numPermutations, 100, threshold, testFile) + "\n");
+//			}
+//			writer.close();
+//		} catch (FileNotFoundException e) {
+//			e.printStackTrace();
+//		}
+	}
+
+	/**
+	 * Helper Method, chooses the number of bands with BandTuner and prints its
+	 * predictions.
+	 * 
+	 * @param minHashMatrix
+	 * @param threshold
+	 * @param all
+	 *            whether all pairs are wanted, or the near duplicates of one
+	 *            document
+	 * @return the number of bands
+	 */
+	private static int tune(SignatureMatrix minHashMatrix, double threshold, boolean all) {
+		BandTuner tuner = new BandTuner(minHashMatrix, SAMPLE_ROWS, 1);
+		int bands = tuner.tune(threshold, FALSE_NEGATIVES);
+		double candidates = tuner.predictedCandidates(bands);
+		System.out.println("Sampled " + tuner.numSamplePairs() + " pairs of " + tuner.numSampleRows()
+				+ " documents: " + bands + " bands of " + minHashMatrix.numPermutations() / bands + " rows.");
+		System.out.printf("Predicted: %.0f pairs at or above the threshold, %.1f%% of them missed.%n",
+				tuner.predictedPairs(threshold), 100 * tuner.falseNegatives(bands, threshold));
+		if (all) {
+			System.out.printf("Predicted: %.0f candidate pairs.%n", candidates);
+		} else {
+			System.out.printf("Predicted: %.1f candidate files per document.%n",
+					2 * candidates / minHashMatrix.numRows());
+		}
+		return bands;
+	}
+
+	/**
+	 * Helper Method
+	 * 
+	 * @param minHash
+	 * @param minHashMatrix
+	 * @param numPermutations
+	 * @param bands
+	 * @param threshold
+	 * @param fileName
+	 * @return
+	 */
+	private static String execute(Signatures minHash, SignatureMatrix minHashMatrix, int numPermutations, int bands,
+			double threshold, String fileName) {
+		String[] docNames = minHash.allDocs();
+		System.out.println("Number of docs: " + docNames.length);
+		// for(int i=0;i<docNames.length;i++){
+		// if(i%8==0) System.out.println();
+		// System.out.print(docNames[i]+", ");
+		// }
+
+		LSH lsh = new LSH(minHashMatrix, docNames, bands);
+		String[] candidateFiles = lsh.nearDuplicatesOf(fileName);
+		System.out.println();
+		System.out.println(numPermutations + " permutations and " + bands
+				+ " bands are used to find near duplicate files for " + fileName + ".");
+		System.out.println("There are " + candidateFiles.length + " candidate files.");
+		ArrayList<String> similarFiles = new ArrayList<String>();
+		long start = VERIFY.start();
+		for (String s : candidateFiles) {
+			double jacValue = minHash.approximateJaccard(fileName, s);
+			// System.out.println(s + ", " + jacValue);
+			if (jacValue >= threshold) {
+				similarFiles.add(s);
+			}
+		}
+		VERIFY.stop(start);
+		System.out.println("There are " + similarFiles.size() + " files which are near duplicate to " + fileName
+				+ " with threshold: " + threshold + ":");
+		System.out.println(similarFiles);
+		String result = candidateFiles.length + ";" + similarFiles.size();
+		return result;
+	}
+
+	/**
+	 * Helper Method, dedupes the whole collection and writes its clusters of
+	 * near duplicates to the output file, one cluster per line.
+	 * 
+	 * @param minHash
+	 * @param minHashMatrix
+	 * @param bands
+	 * @param threshold
+	 * @param parallelism
+	 * @param outputFile
+	 */
+	private static void executeAll(Signatures minHash, SignatureMatrix minHashMatrix, int bands, double threshold,
+			int parallelism, File outputFile) {
+		String[] docNames = minHash.allDocs();
+		LSH lsh = new LSH(minHashMatrix, docNames, bands);
+		DuplicateClusters clusters = new DuplicateClusters(lsh, minHashMatrix, threshold, parallelism);
+		System.out.println("There are " + clusters.numCandidates() + " candidate pairs, " + clusters.numDuplicates()
+				+ " of them are near duplicates with threshold: " + threshold + ".");
+		try {
+			int numClusters = clusters.write(outputFile, docNames);
+			System.out.println(numClusters + " clusters of near duplicates are written to " + outputFile + ".");
+		} catch (FileNotFoundException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,551 @@
+package minhash;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An LSH index partitioned by document range over shard processes, so that
+ * the band tables of a collection are not limited to the heap of one JVM.
+ * Every shard (see LSHShard) holds all bands of a range of the documents of a
+ * signature file. The coordinator scatters every query to all shards and
+ * gathers their matches into one ranking; since a document's buckets only
+ * depend on its own signature, the result is the same as that of one LSH
+ * over all documents.
+ *
+ * All signature files must be computed with the same hash family, i.e. the
+ * same scheme, number of permutations, kind of family, seed and shingles,
+ * so that the shards are compatible; adding the shards of a file that is not
+ * is refused. The index scales out by adding shards, e.g. over the
+ * signature file of newly arrived documents.
+ *
+ * The shards run on this machine, started with the java command and class
+ * path of the coordinator, and are reached on the loopback interface. The
+ * shards added together build their indexes in parallel. A shard whose
+ * connection fails, or that does not answer within the read timeout, is
+ * stopped and the query fails; the next query starts it again over the same
+ * documents first. A ShardedLSH is not thread safe; close it to stop its
+ * shards.
+ *
+ * @author YAN DENG
+ *
+ */
+public class ShardedLSH implements Closeable {
+
+	/**
+	 * A shard process and its connection.
+	 */
+	private static class Shard {
+		private Process process;
+		private File signatureFile;
+		private int from; // first document, inclusive
+		private int to; // last document, exclusive
+		private String description; // signature file and document range
+		private Socket socket;
+		private DataInputStream in;
+		private DataOutputStream out;
+		private String failure; // why the shard is down, null while it serves
+	}
+
+	private static final long STOP_SECONDS = 10; // until a closed shard is killed
+
+	private int bands;
+	private int readTimeout = 60000; // milliseconds a shard may take to answer
+	private String[] jvmOptions; // passed to every shard process
+	private ArrayList<Shard> shards = new ArrayList<Shard>();
+	private ArrayList<SignatureStore> stores = new ArrayList<SignatureStore>(); // one per signature file
+	private int numDocuments;
+
+	/**
+	 * Constructor, an index without shards.
+	 *
+	 * @param bands
+	 *            the number of bands of every shard
+	 * @param jvmOptions
+	 *            options of the shard processes, e.g. "-Xmx4g"
+	 */
+	public ShardedLSH(int bands, String... jvmOptions) {
+		if (bands < 1)
+			throw new IllegalArgumentException("Number of bands should be greater or equal to 1.");
+		this.bands = bands;
+		this.jvmOptions = jvmOptions.clone();
+	}
+
+	/**
+	 * Split the documents of a signature file into ranges of about equal size
+	 * and start one shard per range. The shards build their indexes in
+	 * parallel; this returns once all of them are ready.
+	 *
+	 * @param signatureFile
+	 *            file written by SignatureStore
+	 * @param numShards
+	 *            number of shards the documents are split into
+	 * @throws IOException
+	 */
+	public void addShards(File signatureFile, int numShards) throws IOException {
+		if (numShards < 1)
+			throw new IllegalArgumentException("Number of shards should be greater or equal to 1.");
+		SignatureStore store = SignatureStore.open(signatureFile);
+		checkCompatible(store, signatureFile);
+		if (bands > store.numPermutations())
+			throw new IllegalArgumentException("Number of bands should be less or equal to number of permutations.");
+		int n = store.allDocs().length;
+		numShards = Math.max(1, Math.min(numShards, n));
+		ArrayList<Shard> started = new ArrayList<Shard>();
+		try {
+			for (int i = 0; i < numShards; i++) {
+				int from = (int) ((long) n * i / numShards);
+				int to = (int) ((long) n * (i + 1) / numShards);
+				started.add(start(signatureFile, from, to));
+			}
+			for (Shard shard : started) {
+				connect(shard);
+			}
+		} catch (IOException e) {
+			for (Shard shard : started) {
+				stop(shard);
+			}
+			throw e;
+		}
+		shards.addAll(started);
+		stores.add(store);
+		numDocuments += n;
+	}
+
+	/**
+	 * The signatures of all shards must come from the same hash functions.
+	 */
+	private void checkCompatible(SignatureStore store, File signatureFile) {
+		if (stores.isEmpty())
+			return;
+		SignatureStore first = stores.get(0);
+		if (store.numPermutations() != first.numPermutations() || store.scheme() != first.scheme()
+				|| store.family().kind() != first.family().kind() || store.seed() != first.seed()
+				|| store.shingles() != first.shingles() || store.shingleSize() != first.shingleSize()) {
+			throw new IllegalArgumentException("The signatures of " + signatureFile
+					+ " are not computed with the hash family of the index.");
+		}
+	}
+
+	/**
+	 * Start the process of a shard, without waiting for it.
+	 */
+	private Shard start(File signatureFile, int from, int to) throws IOException {
+		ArrayList<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.addAll(Arrays.asList(jvmOptions));
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(LSHShard.class.getName());
+		command.add(signatureFile.getPath());
+		command.add(String.valueOf(from));
+		command.add(String.valueOf(to));
+		command.add(String.valueOf(bands));
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		Shard shard = new Shard();
+		shard.signatureFile = signatureFile;
+		shard.from = from;
+		shard.to = to;
+		shard.description = signatureFile + " [" + from + "," + to + ")";
+		shard.process = builder.start();
+		return shard;
+	}
+
+	/**
+	 * Wait until the shard has built its index and connect to it.
+	 */
+	private void connect(Shard shard) throws IOException {
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(shard.process.getInputStream(), StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null && !line.startsWith(LSHShard.READY)) {
+			System.out.println(line); // e.g. the warning of unused values
+		}
+		if (line == null)
+			throw new IOException("Shard " + shard.description + " exited before it was ready.");
+		int port = Integer.parseInt(line.substring(LSHShard.READY.length()).trim());
+		shard.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		shard.socket.setTcpNoDelay(true);
+		shard.socket.setSoTimeout(readTimeout);
+		shard.in = new DataInputStream(new BufferedInputStream(shard.socket.getInputStream()));
+		shard.out = new DataOutputStream(new BufferedOutputStream(shard.socket.getOutputStream()));
+	}
+
+	/**
+	 * Find the documents sharing a bucket with a signature, in all shards,
+	 * like LSH.query.
+	 *
+	 * @param signature
+	 *            MinHash signature computed with the hash family of the index
+	 * @param threshold
+	 *            smallest estimated similarity of a match, 0 returns every
+	 *            candidate
+	 * @return Returns the matches of all shards, ranked by estimated
+	 *         similarity
+	 * @throws IOException
+	 */
+	public LSH.Match[] query(int[] signature, double threshold) throws IOException {
+		checkQuery(signature);
+		for (Shard shard : shards) {
+			try {
+				shard.out.writeInt(LSHShard.QUERY);
+				shard.out.writeDouble(threshold);
+				writeSignature(shard.out, signature);
+			} catch (IOException e) {
+				fail(shard, e);
+			}
+		}
+		LSH.Match[] matches = gather();
+		Arrays.sort(matches, LSH.RANKING);
+		return matches;
+	}
+
+	/**
+	 * Find the k documents most similar to a signature: the k best of each
+	 * shard are gathered and the k best of them kept, like LSH.topK.
+	 *
+	 * @param signature
+	 *            MinHash signature computed with the hash family of the index
+	 * @param k
+	 *            number of matches wanted
+	 * @return Returns at most k matches, ranked by estimated similarity
+	 * @throws IOException
+	 */
+	public LSH.Match[] topK(int[] signature, int k) throws IOException {
+		checkQuery(signature);
+		if (k < 1)
+			throw new IllegalArgumentException("k should be greater or equal to 1.");
+		for (Shard shard : shards) {
+			try {
+				shard.out.writeInt(LSHShard.TOPK);
+				shard.out.writeInt(k);
+				writeSignature(shard.out, signature);
+			} catch (IOException e) {
+				fail(shard, e);
+			}
+		}
+		LSH.Match[] matches = gather();
+		Arrays.sort(matches, LSH.RANKING);
+		return Arrays.copyOf(matches, Math.min(k, matches.length));
+	}
+
+	/**
+	 * Find the near duplicate candidates of a document of the index, in all
+	 * shards, like LSH.nearDuplicatesOf.
+	 *
+	 * @param docName
+	 * @return Returns the names of the candidates, ranked by estimated
+	 *         similarity
+	 * @throws IOException
+	 */
+	public String[] nearDuplicatesOf(String docName) throws IOException {
+		if (docName.equals(".DS_Store"))
+			return new String[0]; // not in any bucket
+		LSH.Match[] matches = query(signature(docName), 0);
+		String[] names = new String[matches.length];
+		int numNames = 0;
+		for (LSH.Match match : matches) {
+			if (!match.docName().equals(docName))
+				names[numNames++] = match.docName();
+		}
+		return Arrays.copyOf(names, numNames);
+	}
+
+	/**
+	 * Find the k documents most similar to a document of the index, the
+	 * document itself left out.
+	 *
+	 * @param docName
+	 * @param k
+	 *            number of matches wanted
+	 * @return Returns at most k matches, ranked by estimated similarity
+	 * @throws IOException
+	 */
+	public LSH.Match[] topK(String docName, int k) throws IOException {
+		if (docName.equals(".DS_Store"))
+			return new LSH.Match[0]; // not in any bucket
+		LSH.Match[] matches = topK(signature(docName), k + 1);
+		LSH.Match[] others = new LSH.Match[matches.length];
+		int numOthers = 0;
+		for (LSH.Match match : matches) {
+			if (!match.docName().equals(docName))
+				others[numOthers++] = match;
+		}
+		return Arrays.copyOf(others, Math.min(k, numOthers));
+	}
+
+	/**
+	 *
+	 * @return Returns the signature of the document, from the first signature
+	 *         file holding it
+	 */
+	private int[] signature(String docName) {
+		for (SignatureStore store : stores) {
+			if (store.contains(docName))
+				return store.minHashSig(docName);
+		}
+		throw new IllegalArgumentException("File: " + docName + " does not exist.");
+	}
+
+	/**
+	 * Check a query and start the shards that are down again. The query is
+	 * refused when the index has no shards or a shard can not be started,
+	 * since its documents would be missing from the result.
+	 */
+	private void checkQuery(int[] signature) throws IOException {
+		if (stores.isEmpty())
+			throw new IllegalStateException("The index has no shards.");
+		if (signature.length != stores.get(0).numPermutations())
+			throw new IllegalArgumentException(
+					"The signature should have " + stores.get(0).numPermutations() + " values.");
+		restart();
+		for (Shard shard : shards) {
+			if (shard.failure != null)
+				throw new IOException("Shard " + shard.description + " is down: " + shard.failure);
+		}
+	}
+
+	/**
+	 * Replace every shard that is down by a new process over the same
+	 * documents. The replacements build their indexes in parallel; one that
+	 * can not be started or connected to is marked down in turn.
+	 */
+	private void restart() {
+		ArrayList<Shard> started = new ArrayList<Shard>();
+		for (int i = 0; i < shards.size(); i++) {
+			Shard shard = shards.get(i);
+			if (shard.failure == null)
+				continue;
+			System.out.println("Restarting shard " + shard.description + ", down: " + shard.failure);
+			try {
+				Shard replacement = start(shard.signatureFile, shard.from, shard.to);
+				shards.set(i, replacement);
+				started.add(replacement);
+			} catch (IOException e) {
+				shard.failure = e.toString();
+			}
+		}
+		for (Shard shard : started) {
+			try {
+				connect(shard);
+			} catch (IOException e) {
+				fail(shard, e);
+			}
+		}
+	}
+
+	private static void writeSignature(DataOutputStream out, int[] signature) throws IOException {
+		out.writeInt(signature.length);
+		for (int value : signature) {
+			out.writeInt(value);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Read the response of every shard, after the request was sent to all of
+	 * them, so that the shards answer in parallel. Every shard's response is
+	 * read even after one failed, so that the connections stay in step. A
+	 * shard whose connection fails, that does not answer within the read
+	 * timeout (a SocketTimeoutException) or that reports a protocol error is
+	 * stopped and marked down.
+	 *
+	 * @return Returns the matches of all shards
+	 * @throws IOException
+	 *             if a shard is down
+	 * @throws IllegalStateException
+	 *             if a shard could not answer the request
+	 */
+	private LSH.Match[] gather() throws IOException {
+		ArrayList<LSH.Match> matches = new ArrayList<LSH.Match>();
+		String error = null;
+		for (Shard shard : shards) {
+			if (shard.failure != null)
+				continue; // the request was not sent
+			try {
+				int count = shard.in.readInt();
+				if (count == LSHShard.ERROR) {
+					error = "Shard " + shard.description + ": " + shard.in.readUTF();
+				} else if (count == LSHShard.PROTOCOL_ERROR) {
+					fail(shard, new ProtocolException(shard.in.readUTF()));
+				} else if (count < 0) {
+					fail(shard, new ProtocolException("Invalid response " + count + "."));
+				} else {
+					for (int i = 0; i < count; i++) {
+						String name = shard.in.readUTF();
+						matches.add(new LSH.Match(name, shard.in.readDouble()));
+					}
+				}
+			} catch (IOException e) {
+				fail(shard, e);
+			}
+		}
+		for (Shard shard : shards) {
+			if (shard.failure != null)
+				throw new IOException("Shard " + shard.description + " is down: " + shard.failure);
+		}
+		if (error != null)
+			throw new IllegalStateException(error);
+		return matches.toArray(new LSH.Match[matches.size()]);
+	}
+
+	/**
+	 * Mark the shard down and stop its process; one that timed out is hung,
+	 * so it is killed without asking it to exit first.
+	 */
+	private static void fail(Shard shard, IOException e) {
+		shard.failure = e.toString();
+		if (e instanceof SocketTimeoutException) {
+			shard.process.destroyForcibly();
+			try {
+				shard.socket.close();
+			} catch (IOException ignored) {
+				// the process is killed anyway
+			}
+		} else {
+			stop(shard);
+		}
+	}
+
+	/**
+	 *
+	 * @return Returns the number of shards
+	 */
+	public int numShards() {
+		return shards.size();
+	}
+
+	/**
+	 *
+	 * @return Returns the number of documents of all shards
+	 */
+	public int numDocuments() {
+		return numDocuments;
+	}
+
+	/**
+	 * Set how long a shard may take to answer before it is considered hung,
+	 * stopped and marked down. It applies to the shards added afterwards.
+	 *
+	 * @param millis
+	 *            read timeout in milliseconds, 0 waits forever
+	 */
+	public void setReadTimeout(int millis) {
+		if (millis < 0)
+			throw new IllegalArgumentException("The read timeout should be greater or equal to 0.");
+		this.readTimeout = millis;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of bands of every shard
+	 */
+	public int bands() {
+		return bands;
+	}
+
+	/**
+	 * Stop every shard.
+	 */
+	@Override
+	public void close() {
+		for (Shard shard : shards) {
+			stop(shard);
+		}
+		shards.clear();
+		stores.clear();
+		numDocuments = 0;
+	}
+
+	/**
+	 * Ask the shard to exit, and kill it if it does not.
+	 */
+	private static void stop(Shard shard) {
+		try {
+			if (shard.out != null) {
+				shard.out.writeInt(LSHShard.CLOSE);
+				shard.out.flush();
+				shard.socket.close();
+			}
+			if (!shard.process.waitFor(STOP_SECONDS, TimeUnit.SECONDS))
+				shard.process.destroyForcibly(); // hung
+		} catch (IOException e) {
+			shard.process.destroy();
+		} catch (InterruptedException e) {
+			shard.process.destroy();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Find the near duplicates of a document with an index sharded over local
+	 * processes.
+	 *
+	 * @param args
+	 *            &lt;signature files, comma separated&gt; &lt;number of
+	 *            bands&gt; &lt;shards per file&gt; &lt;similarity
+	 *            threshold&gt; &lt;name of a document&gt;
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 5) {
+			throw new IllegalArgumentException(
+					"Invalid arguments, should be: <signature files, comma separated> <number of bands> <shards per file> <similarity threshold> <name of a document>");
+		}
+		int bands = Integer.parseInt(args[1]);
+		int numShards = Integer.parseInt(args[2]);
+		double threshold = Double.parseDouble(args[3]);
+		if (threshold < 0 || threshold > 1) {
+			throw new IllegalArgumentException("threshold should range between 0 and 1");
+		}
+		String fileName = args[4];
+		ShardedLSH lsh = new ShardedLSH(bands);
+		try {
+			Helper timer = new Helper();
+			timer.startTimer();
+			for (String signatureFile : args[0].split(",")) {
+				lsh.addShards(new File(signatureFile.trim()), numShards);
+			}
+			timer.stopTimer();
+			System.out.printf("%d shards of %d files with %d bands are built in %.3f seconds.%n", lsh.numShards(),
+					lsh.numDocuments(), bands, timer.getSeconds());
+			timer.startTimer();
+			LSH.Match[] matches = fileName.equals(".DS_Store") ? new LSH.Match[0]
+					: lsh.query(lsh.signature(fileName), 0); // every candidate, once
+			timer.stopTimer();
+			int numCandidates = 0;
+			ArrayList<String> similarFiles = new ArrayList<String>();
+			for (LSH.Match match : matches) {
+				if (match.docName().equals(fileName))
+					continue;
+				numCandidates++;
+				if (match.similarity() >= threshold)
+					similarFiles.add(match.docName());
+			}
+			System.out.println("There are " + numCandidates + " candidate files.");
+			System.out.println("There are " + similarFiles.size() + " files which are near duplicate to " + fileName
+					+ " with threshold: " + threshold + ":");
+			System.out.println(similarFiles);
+			System.out.printf("The query took %.3f ms.%n", timer.getNanos() / 1e6);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e); // the timer is stopped
+		} finally {
+			lsh.close();
+		}
+	}
+}
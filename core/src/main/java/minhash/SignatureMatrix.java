@@ -0,0 +1,291 @@
+package minhash;
+
+import java.util.Arrays;
+
+/**
+ * The MinHash signatures of a document collection in one contiguous int
+ * array, row after row: the K values of row d are at d*K to d*K+K-1. Rows
+ * scanned one after the other are read sequentially from memory, instead of
+ * following a pointer to a separate array per row.
+ *
+ * The equal values of two rows are counted by EqualityCounter.instance(),
+ * with the Vector API when the JVM provides it.
+ *
+ * Rows can be appended; setting rows of different indexes from several
+ * threads is safe as long as no row is appended meanwhile.
+ *
+ * @author YAN DENG
+ *
+ */
+public class SignatureMatrix {
+
+	private static final EqualityCounter COUNTER = EqualityCounter.instance();
+	private static final int ABORT_BLOCK = 64; // values counted between two
+												// checks of equalities
+
+	private int numPermutations; // K, values per row
+	private int numRows;
+	private int[] values; // numRows * K values, then spare capacity
+
+	/**
+	 * Constructor, a matrix of the given number of rows, all values 0.
+	 *
+	 * @param numPermutations
+	 *            number of values of a row
+	 * @param numRows
+	 */
+	public SignatureMatrix(int numPermutations, int numRows) {
+		if (numPermutations < 1)
+			throw new IllegalArgumentException("Number of permutations should be greater or equal to 1.");
+		this.numPermutations = numPermutations;
+		this.numRows = numRows;
+		this.values = new int[Math.multiplyExact(Math.max(numRows, 1), numPermutations)];
+	}
+
+	/**
+	 * Constructor, copies the rows of a MinHash matrix.
+	 *
+	 * @param minHashMatrix
+	 *            rows of equal length
+	 */
+	public SignatureMatrix(int[][] minHashMatrix) {
+		this(minHashMatrix[0].length, minHashMatrix.length);
+		for (int row = 0; row < numRows; row++) {
+			set(row, minHashMatrix[row]);
+		}
+	}
+
+	/**
+	 * Overwrite a row.
+	 *
+	 * @param row
+	 * @param signature
+	 *            K values
+	 */
+	public void set(int row, int[] signature) {
+		if (row < 0 || row >= numRows)
+			throw new IllegalArgumentException("Row " + row + " does not exist.");
+		if (signature.length != numPermutations)
+			throw new IllegalArgumentException("The signature should have " + numPermutations + " values.");
+		System.arraycopy(signature, 0, values, row * numPermutations, numPermutations);
+	}
+
+	/**
+	 * Append a row, doubling the capacity when it is full.
+	 *
+	 * @param signature
+	 *            K values
+	 * @return Returns the index of the new row
+	 */
+	public int add(int[] signature) {
+		if ((long) (numRows + 1) * numPermutations > values.length) {
+			values = Arrays.copyOf(values, Math.multiplyExact(2 * numRows, numPermutations));
+		}
+		numRows++;
+		set(numRows - 1, signature);
+		return numRows - 1;
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @return Returns a copy of the row
+	 */
+	public int[] row(int row) {
+		int offset = offset(row);
+		return Arrays.copyOfRange(values, offset, offset + numPermutations);
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @param index
+	 *            index of the value in the row
+	 * @return Returns value index of the row
+	 */
+	public int get(int row, int index) {
+		return values[offset(row) + index];
+	}
+
+	/**
+	 *
+	 * @param keep
+	 *            whether to keep each row
+	 * @param count
+	 *            number of rows kept
+	 * @return Returns a new matrix of the kept rows, in their order
+	 */
+	public SignatureMatrix select(boolean[] keep, int count) {
+		SignatureMatrix selected = new SignatureMatrix(numPermutations, count);
+		int to = 0;
+		for (int row = 0; row < numRows; row++) {
+			if (keep[row]) {
+				System.arraycopy(values, row * numPermutations, selected.values, to, numPermutations);
+				to += numPermutations;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 *
+	 * @return Returns a copy of every row, as separate arrays
+	 */
+	public int[][] toArray() {
+		int[][] matrix = new int[numRows][];
+		for (int row = 0; row < numRows; row++) {
+			matrix[row] = row(row);
+		}
+		return matrix;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of values of the two rows that are equal
+	 */
+	public int equalities(int row1, int row2) {
+		return COUNTER.count(values, offset(row1), values, offset(row2), numPermutations);
+	}
+
+	/**
+	 * Count the values of a signature and a row that are equal, a block of
+	 * values at a time, giving up once the rest of the row can not bring the
+	 * count to the minimum.
+	 *
+	 * @param signature
+	 *            K values
+	 * @param row
+	 * @param minimum
+	 *            the count of interest, 0 to count all
+	 * @return Returns the number of equal values, or a number less than the
+	 *         minimum if it is not reached
+	 */
+	public int equalities(int[] signature, int row, int minimum) {
+		checkLength(signature);
+		int offset = offset(row);
+		if (minimum <= 0)
+			return COUNTER.count(signature, 0, values, offset, numPermutations);
+		int count = 0;
+		for (int from = 0; from < numPermutations; from += ABORT_BLOCK) {
+			int length = Math.min(ABORT_BLOCK, numPermutations - from);
+			count += COUNTER.count(signature, from, values, offset + from, length);
+			if (count + numPermutations - from - length < minimum)
+				break;
+		}
+		return count;
+	}
+
+	/**
+	 * Estimate the Jaccard similarity of two rows: the fraction of equal
+	 * values.
+	 *
+	 * @param row1
+	 * @param row2
+	 * @return the estimated Jaccard similarity
+	 */
+	public double approximateJaccard(int row1, int row2) {
+		return (double) equalities(row1, row2) / numPermutations;
+	}
+
+	/**
+	 * Estimate the Jaccard similarity of a signature that need not be a row,
+	 * e.g. from MinHash.signatureOf, and a row.
+	 *
+	 * @param signature
+	 *            K values
+	 * @param row
+	 * @return the estimated Jaccard similarity
+	 */
+	public double approximateJaccard(int[] signature, int row) {
+		checkLength(signature);
+		return (double) COUNTER.count(signature, 0, values, offset(row), numPermutations) / numPermutations;
+	}
+
+	/**
+	 * Estimate the Jaccard similarity of a signature and each row of a block
+	 * of consecutive rows (see EqualityCounter for how the block is compared).
+	 *
+	 * @param signature
+	 *            K values
+	 * @param from
+	 *            first row of the block
+	 * @param to
+	 *            last row of the block, exclusive
+	 * @param similarities
+	 *            receives the similarity to row from+j at similarities[j]
+	 */
+	public void approximateJaccard(int[] signature, int from, int to, double[] similarities) {
+		checkLength(signature);
+		scores(signature, 0, from, to, similarities);
+	}
+
+	/**
+	 * Estimate the Jaccard similarity of a row and each row of a block of
+	 * consecutive rows, e.g. the rows after it when comparing all pairs.
+	 *
+	 * @param row
+	 * @param from
+	 *            first row of the block
+	 * @param to
+	 *            last row of the block, exclusive
+	 * @param similarities
+	 *            receives the similarity to row from+j at similarities[j]
+	 */
+	public void approximateJaccard(int row, int from, int to, double[] similarities) {
+		scores(values, offset(row), from, to, similarities);
+	}
+
+	private void scores(int[] query, int queryOffset, int from, int to, double[] similarities) {
+		if (from < 0 || to > numRows || from > to)
+			throw new IllegalArgumentException("Rows " + from + " to " + to + " do not exist.");
+		int[] counts = new int[to - from];
+		COUNTER.count(query, queryOffset, values, from * numPermutations, to - from, numPermutations, counts);
+		for (int j = 0; j < counts.length; j++) {
+			similarities[j] = (double) counts[j] / numPermutations;
+		}
+	}
+
+	private void checkLength(int[] signature) {
+		if (signature.length != numPermutations)
+			throw new IllegalArgumentException("The signature should have " + numPermutations + " values.");
+	}
+
+	private int offset(int row) {
+		if (row < 0 || row >= numRows)
+			throw new IllegalArgumentException("Row " + row + " does not exist.");
+		return row * numPermutations;
+	}
+
+	/**
+	 *
+	 * @return Returns the array of the values, row after row; it is shared
+	 *         and replaced when rows are appended
+	 */
+	int[] values() {
+		return values;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of rows
+	 */
+	public int numRows() {
+		return numRows;
+	}
+
+	/**
+	 *
+	 * @return Returns K, the number of values of a row
+	 */
+	public int numPermutations() {
+		return numPermutations;
+	}
+
+	/**
+	 *
+	 * @return Returns true if the rows are compared with the Vector API
+	 */
+	public static boolean vectorized() {
+		return COUNTER.vectorized();
+	}
+}
@@ -0,0 +1,381 @@
+package minhash;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * MinHash signatures written once to a binary file and read back through a
+ * memory mapping, so that a query process starts without reading or
+ * tokenizing the documents again.
+ *
+ * File format (version 4, big endian):
+ *
+ * <pre>
+ * int    magic "MHSG"
+ * int    version
+ * int    scheme (ordinal of MinHash.Scheme)
+ * int    numDocuments
+ * int    numPermutations
+ * long   seed of the hash functions
+ * int    hash family (ordinal of HashFamily.Kind)
+ * int    numTerms of the vocabulary
+ * int    shingles (ordinal of Tokenizer.Shingles)
+ * int    shingle size
+ * long   offset of the signatures
+ * long   offset of the document names
+ * ...    padding to a multiple of 8
+ * int[]  signatures, numPermutations ints per document
+ * per document: int length, UTF-8 bytes of its name
+ * </pre>
+ *
+ * @author YAN DENG
+ *
+ */
+public class SignatureStore implements Signatures {
+
+	public static final int MAGIC = 0x4D485347; // "MHSG"
+	public static final int VERSION = 4;
+	private static final int HEADER_SIZE = 60;
+	private static final long CHUNK_SIZE = 1 << 30; // bytes of signatures per
+													// mapping
+
+	private MinHash.Scheme scheme;
+	private int numDocuments;
+	private int numPermutations;
+	private HashFamily family;
+	private int numTerms;
+	private Tokenizer.Shingles shingles;
+	private int shingleSize;
+	private String[] docNames;
+	private HashMap<String, Integer> docIds; // doc name -> index in docNames
+	private IntBuffer[] chunks; // mapped signatures, rowsPerChunk rows each
+	private int rowsPerChunk;
+
+	/**
+	 * Write the signatures of the collection to the given file.
+	 *
+	 * @param minHash
+	 *            MinHash instance the signatures were computed with
+	 * @param minHashMatrix
+	 *            the MinHash matrix of the collection
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void write(MinHash minHash, int[][] minHashMatrix, File file) throws IOException {
+		int k = minHash.numPermutations();
+		String[] names = minHash.allDocs();
+		long signaturesOffset = (HEADER_SIZE + 7) & ~7L;
+		long namesOffset = signaturesOffset + 4L * k * names.length;
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(minHash.scheme().ordinal());
+			out.writeInt(names.length);
+			out.writeInt(k);
+			out.writeLong(minHash.seed());
+			out.writeInt(minHash.family().kind().ordinal());
+			out.writeInt(minHash.numTerms());
+			out.writeInt(minHash.shingles().ordinal());
+			out.writeInt(minHash.shingleSize());
+			out.writeLong(signaturesOffset);
+			out.writeLong(namesOffset);
+			for (long i = HEADER_SIZE; i < signaturesOffset; i++) {
+				out.writeByte(0);
+			}
+			for (int[] row : minHashMatrix) {
+				for (int value : row) {
+					out.writeInt(value);
+				}
+			}
+			for (String name : names) {
+				byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Open a signature file. Only the header and the document names are read,
+	 * the signatures are mapped and read on access.
+	 *
+	 * @param file
+	 * @return Returns the signatures of the file
+	 * @throws IOException
+	 */
+	public static SignatureStore open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return new SignatureStore(raf.getChannel());
+		} finally {
+			raf.close();
+		}
+	}
+
+	private SignatureStore(FileChannel channel) throws IOException {
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(HEADER_SIZE, channel.size()));
+		if (header.limit() < HEADER_SIZE || header.getInt(0) != MAGIC)
+			throw new IOException("Not a signature file.");
+		if (header.getInt(4) != VERSION)
+			throw new IOException("Unsupported signature file version " + header.getInt(4) + ".");
+		this.scheme = MinHash.Scheme.values()[header.getInt(8)];
+		this.numDocuments = header.getInt(12);
+		this.numPermutations = header.getInt(16);
+		long seed = header.getLong(20);
+		HashFamily.Kind kind = HashFamily.Kind.values()[header.getInt(28)];
+		this.family = HashFamily.create(kind, scheme == MinHash.Scheme.ONE_PERMUTATION ? 1 : numPermutations, seed);
+		this.numTerms = header.getInt(32);
+		this.shingles = Tokenizer.Shingles.values()[header.getInt(36)];
+		this.shingleSize = header.getInt(40);
+		long signaturesOffset = header.getLong(44);
+		long namesOffset = header.getLong(52);
+
+		this.rowsPerChunk = (int) Math.max(1, CHUNK_SIZE / (4L * numPermutations));
+		this.chunks = new IntBuffer[(numDocuments + rowsPerChunk - 1) / rowsPerChunk];
+		for (int c = 0; c < chunks.length; c++) {
+			int rows = Math.min(rowsPerChunk, numDocuments - c * rowsPerChunk);
+			long offset = signaturesOffset + 4L * numPermutations * c * rowsPerChunk;
+			chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, offset, 4L * numPermutations * rows).asIntBuffer();
+		}
+
+		ByteBuffer names = channel.map(FileChannel.MapMode.READ_ONLY, namesOffset, channel.size() - namesOffset);
+		this.docNames = new String[numDocuments];
+		this.docIds = new HashMap<String, Integer>();
+		byte[] bytes = new byte[256];
+		for (int i = 0; i < numDocuments; i++) {
+			int length = names.getInt();
+			if (length > bytes.length)
+				bytes = new byte[Math.max(length, 2 * bytes.length)];
+			names.get(bytes, 0, length);
+			docNames[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+			docIds.put(docNames[i], i);
+		}
+	}
+
+	@Override
+	public String[] allDocs() {
+		return docNames.clone();
+	}
+
+	@Override
+	public int numPermutations() {
+		return numPermutations;
+	}
+
+	@Override
+	public int[] minHashSig(String fileName) {
+		int[] signature = new int[numPermutations];
+		copyRow(fileOrder(fileName), signature, 0);
+		return signature;
+	}
+
+	@Override
+	public int[] signatureOf(String text) {
+		long[] fingerprints = new Tokenizer(shingles, shingleSize).fingerprints(text);
+		return MinHash.signature(fingerprints, scheme, numPermutations, family);
+	}
+
+	@Override
+	public int[] runnerUpsOf(String text) {
+		long[] fingerprints = new Tokenizer(shingles, shingleSize).fingerprints(text);
+		return MinHash.runnerUps(fingerprints, scheme, numPermutations, family);
+	}
+
+	/**
+	 * Copy all signatures from the mapping into the heap, e.g. to build an
+	 * LSH index from them.
+	 */
+	@Override
+	public int[][] minHashMatrix() {
+		int[][] matrix = new int[numDocuments][];
+		for (int i = 0; i < numDocuments; i++) {
+			matrix[i] = minHashSig(docNames[i]);
+		}
+		return matrix;
+	}
+
+	/**
+	 * Copy all signatures from the mapping into one flat matrix, a chunk at a
+	 * time.
+	 */
+	@Override
+	public SignatureMatrix signatureMatrix() {
+		return signatureMatrix(0, numDocuments);
+	}
+
+	/**
+	 * Copy the signatures of a range of documents from the mapping into one
+	 * flat matrix, e.g. for the shard of an index holding that range.
+	 *
+	 * @param from
+	 *            first document, inclusive
+	 * @param to
+	 *            last document, exclusive
+	 * @return Returns the MinHash matrix of the documents, in the order of
+	 *         allDocs
+	 */
+	public SignatureMatrix signatureMatrix(int from, int to) {
+		if (from < 0 || to > numDocuments || from > to)
+			throw new IllegalArgumentException("Documents [" + from + "," + to + ") are out of [0," + numDocuments
+					+ ").");
+		SignatureMatrix matrix = new SignatureMatrix(numPermutations, to - from);
+		int doc = from;
+		while (doc < to) {
+			int first = doc % rowsPerChunk;
+			int rows = Math.min(to - doc, rowsPerChunk - first);
+			IntBuffer chunk = chunks[doc / rowsPerChunk].duplicate();
+			chunk.position(first * numPermutations);
+			chunk.get(matrix.values(), (doc - from) * numPermutations, rows * numPermutations);
+			doc += rows;
+		}
+		return matrix;
+	}
+
+	/**
+	 *
+	 * @param fileName
+	 * @return Returns true if the file holds the signature of the document
+	 */
+	public boolean contains(String fileName) {
+		return docIds.containsKey(fileName);
+	}
+
+	/**
+	 * Compare the two rows directly in the mapping, without copying them, with
+	 * the shared EqualityCounter.
+	 */
+	@Override
+	public double approximateJaccard(String file1, String file2) {
+		int doc1 = fileOrder(file1);
+		int doc2 = fileOrder(file2);
+		int count = EqualityCounter.instance().count(chunks[doc1 / rowsPerChunk],
+				(doc1 % rowsPerChunk) * numPermutations, chunks[doc2 / rowsPerChunk],
+				(doc2 % rowsPerChunk) * numPermutations, numPermutations);
+		return ((double) count) / numPermutations;
+	}
+
+	/**
+	 * Copy the signature of a document from the mapping.
+	 *
+	 * @param doc
+	 *            index of the document in allDocs
+	 * @param values
+	 * @param offset
+	 *            of the signature in values
+	 */
+	private void copyRow(int doc, int[] values, int offset) {
+		IntBuffer chunk = chunks[doc / rowsPerChunk].duplicate();
+		chunk.position((doc % rowsPerChunk) * numPermutations);
+		chunk.get(values, offset, numPermutations);
+	}
+
+	/**
+	 *
+	 * @return Returns the scheme the signatures were computed with
+	 */
+	public MinHash.Scheme scheme() {
+		return scheme;
+	}
+
+	/**
+	 *
+	 * @return Returns the seed of the hash functions
+	 */
+	public long seed() {
+		return family.seed();
+	}
+
+	/**
+	 *
+	 * @return Returns the hash functions the signatures were computed with
+	 */
+	public HashFamily family() {
+		return family;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of terms of the vocabulary the signatures were
+	 *         computed over
+	 */
+	public int numTerms() {
+		return numTerms;
+	}
+
+	/**
+	 *
+	 * @return Returns what the shingles of the documents were made of
+	 */
+	public Tokenizer.Shingles shingles() {
+		return shingles;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of terms or characters of a shingle
+	 */
+	public int shingleSize() {
+		return shingleSize;
+	}
+
+	/**
+	 * Return the index of the given file in the docNames array
+	 *
+	 * @param file
+	 * @return the index of the given file in the docNames array
+	 */
+	private int fileOrder(String file) {
+		Integer index = docIds.get(file);
+		if (index == null) {
+			throw new IllegalArgumentException("File " + file + " does not exist.");
+		}
+		return index;
+	}
+
+	/**
+	 * Compute the signatures of a folder and write them to a signature file.
+	 * Files computed with the same number of permutations and seed share
+	 * their hash functions, so their signatures can be compared, e.g. in the
+	 * shards of one ShardedLSH; without a seed a random one is drawn.
+	 *
+	 * @param args
+	 *            &lt;folder name&gt; &lt;number of permutations&gt;
+	 *            &lt;signature file&gt; [&lt;parallelism&gt; [&lt;seed&gt;]]
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3 || args.length > 5) {
+			throw new IllegalArgumentException(
+					"Invalid arguments, should be: <foldername> <number of permutations> <signature file> [<parallelism> [<seed>]]");
+		}
+		String folderName = args[0].trim();
+		int k = Integer.parseInt(args[1]);// number of permutations
+		if (k < 1) {
+			throw new IllegalArgumentException("Number of permutation should be greater or equal to 1.");
+		}
+		File file = new File(args[2]);
+		int parallelism = args.length >= 4 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		MinHash minHash;
+		if (args.length == 5) {
+			minHash = new MinHash(new Corpus(folderName), k, MinHash.Scheme.K_PERMUTATIONS, parallelism,
+					Long.parseLong(args[4]));
+		} else {
+			minHash = new MinHash(folderName, k, parallelism);
+		}
+		write(minHash, minHash.minHashMatrix(), file);
+		System.out.println("Signatures of " + minHash.allDocs().length + " files (seed " + minHash.seed()
+				+ ") are written to " + file + ".");
+	}
+}
@@ -0,0 +1,73 @@
+package minhash;
+
+/**
+ * MinHash signatures of a document collection, computed from the documents
+ * (MinHash) or read from a signature file (SignatureStore).
+ * 
+ * @author YAN DENG
+ *
+ */
+public interface Signatures {
+
+	/**
+	 * 
+	 * @return Returns an array of String consisting of all the names of files
+	 *         in the document collection
+	 */
+	String[] allDocs();
+
+	/**
+	 * 
+	 * @return Returns the number of min hash values of a signature
+	 */
+	int numPermutations();
+
+	/**
+	 * 
+	 * @param fileName
+	 * @return Returns the MinHash signature of the given document
+	 */
+	int[] minHashSig(String fileName);
+
+	/**
+	 * Hash a text that is not part of the collection with the hash functions
+	 * of the signatures.
+	 * 
+	 * @param text
+	 * @return Returns the MinHash signature of the text
+	 */
+	int[] signatureOf(String text);
+
+	/**
+	 * Compute the runner-ups of the min hash values of a text, the second
+	 * smallest hash of each function, for multi-probe LSH.
+	 * 
+	 * @param text
+	 * @return Returns the runner-up of each value of the signature of the
+	 *         text, or the value itself if there is none
+	 */
+	int[] runnerUpsOf(String text);
+
+	/**
+	 * 
+	 * @return Returns the MinHash Matrix of the collection.
+	 */
+	int[][] minHashMatrix();
+
+	/**
+	 * 
+	 * @return Returns the MinHash Matrix of the collection as one flat
+	 *         matrix, in the order of allDocs
+	 */
+	SignatureMatrix signatureMatrix();
+
+	/**
+	 * Estimate and returns the Jaccard similarity of documents file1 and file2
+	 * by comparing their MinHash signatures
+	 * 
+	 * @param file1
+	 * @param file2
+	 * @return the jaccard similarity between file1 and file2
+	 */
+	double approximateJaccard(String file1, String file2);
+}
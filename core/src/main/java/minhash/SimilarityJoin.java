@@ -0,0 +1,384 @@
+package minhash;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds every pair of documents whose exact Jaccard similarity is at least a
+ * threshold t, without comparing all n²/2 pairs (AllPairs/PPJoin).
+ *
+ * The terms of every document are reordered by increasing document frequency,
+ * so that the first terms of a document are its rarest ones. Two documents
+ * with Jaccard similarity ≥ t must share a term within their first |x| -
+ * ceil(t*|x|) + 1 terms (prefix filter), their sizes can differ by at most a
+ * factor t (length filter), and the overlap still reachable from the position
+ * of a shared prefix term must be enough for t (positional filter). Only the
+ * pairs passing all filters are verified by merging their terms.
+ *
+ * @author YAN DENG
+ *
+ */
+public class SimilarityJoin {
+
+	/**
+	 * Receives the pairs found by the join.
+	 */
+	public interface PairHandler {
+		/**
+		 *
+		 * @param doc1
+		 *            index of the first document in the corpus
+		 * @param doc2
+		 *            index of the second document in the corpus
+		 * @param similarity
+		 *            exact Jaccard similarity of the two documents
+		 */
+		void pair(int doc1, int doc2, double similarity);
+	}
+
+	private static final int RECORDS_PER_TASK = 64;
+
+	private int parallelism;
+	private int[][] records; // term ranks of the documents, sorted by size
+	private int[] docOf; // record -> index of the document in the corpus
+	private int[] recordOf; // index of the document in the corpus -> record
+
+	/**
+	 * Constructor, reorders the terms of every document of the corpus.
+	 *
+	 * @param corpus
+	 *            the document collection
+	 * @param parallelism
+	 *            number of threads probing the index, 1 joins in the calling
+	 *            thread
+	 */
+	public SimilarityJoin(Corpus corpus, int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism should be greater or equal to 1.");
+		this.parallelism = parallelism;
+		int numDocuments = corpus.numDocuments();
+		int[][] terms = new int[numDocuments][];
+		final int[] frequencies = new int[corpus.numTerms()];
+		for (int i = 0; i < numDocuments; i++) {
+			terms[i] = corpus.terms(i);
+			for (int termId : terms[i]) {
+				frequencies[termId]++;
+			}
+		}
+		// rank the terms by increasing document frequency
+		Integer[] byFrequency = new Integer[frequencies.length];
+		for (int i = 0; i < byFrequency.length; i++) {
+			byFrequency[i] = i;
+		}
+		Arrays.sort(byFrequency, (term1, term2) -> frequencies[term1] != frequencies[term2]
+				? Integer.compare(frequencies[term1], frequencies[term2]) : Integer.compare(term1, term2));
+		int[] rank = new int[frequencies.length];
+		for (int i = 0; i < byFrequency.length; i++) {
+			rank[byFrequency[i]] = i;
+		}
+		// order the documents by size
+		final int[] sizes = new int[numDocuments];
+		Integer[] bySize = new Integer[numDocuments];
+		for (int i = 0; i < numDocuments; i++) {
+			sizes[i] = terms[i].length;
+			bySize[i] = i;
+		}
+		Arrays.sort(bySize, (doc1, doc2) -> sizes[doc1] != sizes[doc2] ? Integer.compare(sizes[doc1], sizes[doc2])
+				: Integer.compare(doc1, doc2));
+		this.records = new int[numDocuments][];
+		this.docOf = new int[numDocuments];
+		this.recordOf = new int[numDocuments];
+		for (int i = 0; i < numDocuments; i++) {
+			int doc = bySize[i];
+			int[] ranks = terms[doc];
+			for (int j = 0; j < ranks.length; j++) {
+				ranks[j] = rank[ranks[j]];
+			}
+			Arrays.sort(ranks);
+			records[i] = ranks;
+			docOf[i] = doc;
+			recordOf[doc] = i;
+		}
+	}
+
+	/**
+	 * Find every pair of documents with exact Jaccard similarity ≥ threshold.
+	 * Documents without terms are never reported. With parallelism > 1 the
+	 * pairs are reported from several threads, one at a time.
+	 *
+	 * @param threshold
+	 *            similarity threshold t, 0 < t ≤ 1
+	 * @param handler
+	 *            receives every pair once
+	 */
+	public void join(final double threshold, final PairHandler handler) {
+		if (threshold <= 0 || threshold > 1)
+			throw new IllegalArgumentException("Threshold should be greater than 0 and less or equal to 1.");
+		final Index index = new Index(threshold);
+		if (parallelism == 1) {
+			new Prober(index, threshold, handler).probe(0, records.length);
+			return;
+		}
+		final AtomicInteger next = new AtomicInteger();
+		RecursiveAction[] workers = new RecursiveAction[parallelism];
+		for (int w = 0; w < parallelism; w++) {
+			workers[w] = new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					Prober prober = new Prober(index, threshold, handler);
+					int from;
+					while ((from = next.getAndAdd(RECORDS_PER_TASK)) < records.length) {
+						prober.probe(from, Math.min(from + RECORDS_PER_TASK, records.length));
+					}
+				}
+			};
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(workers);
+				}
+			});
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Exact verification of one pair, e.g. of a candidate pair found by LSH.
+	 *
+	 * @param doc1
+	 *            index of the first document in the corpus
+	 * @param doc2
+	 *            index of the second document in the corpus
+	 * @return Returns the exact Jaccard similarity of the two documents
+	 */
+	public double jaccard(int doc1, int doc2) {
+		int[] x = records[recordOf[doc1]];
+		int[] y = records[recordOf[doc2]];
+		int overlap = overlap(x, 0, y, 0, 0, 0);
+		return ((double) overlap) / (x.length + y.length - overlap);
+	}
+
+	/**
+	 *
+	 * @return Returns the number of documents
+	 */
+	public int numDocuments() {
+		return records.length;
+	}
+
+	/**
+	 * Count the common terms of x[i..] and y[j..], giving up (and returning
+	 * less than required) as soon as the remaining terms can no longer reach
+	 * required.
+	 *
+	 * @return Returns overlap plus the number of common terms
+	 */
+	private static int overlap(int[] x, int i, int[] y, int j, int overlap, int required) {
+		while (i < x.length && j < y.length) {
+			if (overlap + Math.min(x.length - i, y.length - j) < required)
+				return overlap;
+			if (x[i] == y[j]) {
+				overlap++;
+				i++;
+				j++;
+			} else if (x[i] < y[j]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return overlap;
+	}
+
+	/**
+	 *
+	 * @return Returns the length of the probing prefix of a record of the
+	 *         given size
+	 */
+	private static int probingPrefix(int size, double threshold) {
+		return size - (int) Math.ceil(threshold * size - 1e-9) + 1;
+	}
+
+	/**
+	 * The indexing prefix of a record only needs to cover the pairs with
+	 * records that are at least as large, which is shorter than the probing
+	 * prefix.
+	 *
+	 * @return Returns the length of the indexing prefix of a record of the
+	 *         given size
+	 */
+	private static int indexingPrefix(int size, double threshold) {
+		return size - (int) Math.ceil(2 * threshold / (1 + threshold) * size - 1e-9) + 1;
+	}
+
+	/**
+	 * @return Returns the minimal overlap of two records of the given sizes
+	 *         to reach the threshold
+	 */
+	private static int requiredOverlap(int size1, int size2, double threshold) {
+		return (int) Math.ceil(threshold / (1 + threshold) * (size1 + size2) - 1e-9);
+	}
+
+	/**
+	 * Inverted index over the indexing prefixes: for every term rank the
+	 * records (in size order) whose prefix holds it, and its position there.
+	 */
+	private class Index {
+		private int[] starts; // term rank -> first posting
+		private int[] postingRecords;
+		private int[] postingPositions;
+
+		Index(double threshold) {
+			int numRanks = 0;
+			for (int[] record : records) {
+				if (record.length > 0)
+					numRanks = Math.max(numRanks, record[record.length - 1] + 1);
+			}
+			starts = new int[numRanks + 1];
+			for (int[] record : records) {
+				int prefix = Math.min(indexingPrefix(record.length, threshold), record.length);
+				for (int j = 0; j < prefix; j++) {
+					starts[record[j] + 1]++;
+				}
+			}
+			for (int i = 0; i < numRanks; i++) {
+				starts[i + 1] += starts[i];
+			}
+			postingRecords = new int[starts[numRanks]];
+			postingPositions = new int[starts[numRanks]];
+			int[] fill = Arrays.copyOf(starts, numRanks);
+			for (int r = 0; r < records.length; r++) {
+				int[] record = records[r];
+				int prefix = Math.min(indexingPrefix(record.length, threshold), record.length);
+				for (int j = 0; j < prefix; j++) {
+					int posting = fill[record[j]]++;
+					postingRecords[posting] = r;
+					postingPositions[posting] = j;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Probes the index with records and verifies their candidates. Each
+	 * thread uses its own Prober.
+	 */
+	private class Prober {
+		private Index index;
+		private double threshold;
+		private PairHandler handler;
+		private int[] overlaps; // record -> overlap in the prefixes, -1 if
+								// pruned
+		private int[] candidates;
+
+		Prober(Index index, double threshold, PairHandler handler) {
+			this.index = index;
+			this.threshold = threshold;
+			this.handler = handler;
+			this.overlaps = new int[records.length];
+			this.candidates = new int[16];
+		}
+
+		/**
+		 * Join the records [from,to) with the records before them in size
+		 * order.
+		 */
+		void probe(int from, int to) {
+			for (int r = from; r < to; r++) {
+				probe(r);
+			}
+		}
+
+		private void probe(int r) {
+			int[] x = records[r];
+			if (x.length == 0)
+				return;
+			int minSize = (int) Math.ceil(threshold * x.length - 1e-9);
+			int prefix = probingPrefix(x.length, threshold);
+			int numCandidates = 0;
+			for (int i = 0; i < prefix; i++) {
+				int rank = x[i];
+				int end = index.starts[rank + 1];
+				// postings are in size order: skip the records that are too
+				// small (length filter) and stop at the record itself
+				int posting = lowerBound(index.postingRecords, index.starts[rank], end, minSize);
+				for (; posting < end; posting++) {
+					int y = index.postingRecords[posting];
+					if (y >= r)
+						break;
+					int overlap = overlaps[y];
+					if (overlap < 0)
+						continue;
+					int[] other = records[y];
+					int j = index.postingPositions[posting];
+					int required = requiredOverlap(x.length, other.length, threshold);
+					if (overlap == 0) {
+						if (numCandidates == candidates.length)
+							candidates = Arrays.copyOf(candidates, 2 * numCandidates);
+						candidates[numCandidates++] = y;
+					}
+					// positional filter: the overlap still reachable after
+					// this common term must be enough
+					if (overlap + 1 + Math.min(x.length - i - 1, other.length - j - 1) >= required) {
+						overlaps[y] = overlap + 1;
+					} else {
+						overlaps[y] = -1;
+					}
+				}
+			}
+			for (int c = 0; c < numCandidates; c++) {
+				int y = candidates[c];
+				if (overlaps[y] > 0) {
+					verify(r, y);
+				}
+				overlaps[y] = 0;
+			}
+		}
+
+		/**
+		 * Count the overlap of the two records in full and report them if
+		 * they reach the threshold.
+		 */
+		private void verify(int r, int y) {
+			int[] x = records[r];
+			int[] other = records[y];
+			int required = requiredOverlap(x.length, other.length, threshold);
+			int overlap = overlap(x, 0, other, 0, 0, required);
+			if (overlap >= required) {
+				double similarity = ((double) overlap) / (x.length + other.length - overlap);
+				if (similarity >= threshold) {
+					synchronized (handler) {
+						handler.pair(docOf[y], docOf[r], similarity);
+					}
+				}
+			}
+		}
+
+		/**
+		 *
+		 * @return Returns the first posting in [from,to) whose record has at
+		 *         least minSize terms
+		 */
+		private int lowerBound(int[] postingRecords, int from, int to, int minSize) {
+			while (from < to) {
+				int middle = (from + to) >>> 1;
+				if (records[postingRecords[middle]].length < minSize) {
+					from = middle + 1;
+				} else {
+					to = middle;
+				}
+			}
+			return from;
+		}
+	}
+}
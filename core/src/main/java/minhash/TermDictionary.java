@@ -0,0 +1,105 @@
+package minhash;
+
+import java.util.Arrays;
+
+/**
+ * Maps the 64 bit fingerprints of the terms to dense int ids, in the order the
+ * terms are first seen. Open addressing with linear probing over primitive
+ * arrays, so a term costs no String and no boxed Integer. Two terms with the
+ * same fingerprint (probability about 2^-64 per pair) share an id.
+ *
+ * @author YAN DENG
+ *
+ */
+public class TermDictionary {
+
+	private long[] keys; // fingerprint of the term in the slot
+	private int[] ids; // id + 1 of the term in the slot, 0 if the slot is empty
+	private long[] fingerprints; // id -> fingerprint
+	private int size;
+	private int mask;
+
+	/**
+	 * Constructor, an empty dictionary.
+	 */
+	public TermDictionary() {
+		allocate(1024);
+		fingerprints = new long[512];
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		ids = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Look up the id of a term, giving it the next free id if it is new.
+	 *
+	 * @param fingerprint
+	 *            fingerprint of the term
+	 * @return Returns the id of the term
+	 */
+	public int id(long fingerprint) {
+		int slot = find(fingerprint);
+		if (ids[slot] != 0)
+			return ids[slot] - 1;
+		int id = size++;
+		keys[slot] = fingerprint;
+		ids[slot] = id + 1;
+		if (id == fingerprints.length) {
+			fingerprints = Arrays.copyOf(fingerprints, 2 * id);
+		}
+		fingerprints[id] = fingerprint;
+		if (size * 2 > keys.length) {
+			grow();
+		}
+		return id;
+	}
+
+	/**
+	 *
+	 * @param id
+	 * @return Returns the fingerprint of the term with the given id
+	 */
+	public long fingerprint(int id) {
+		return fingerprints[id];
+	}
+
+	/**
+	 *
+	 * @return Returns the number of terms
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @return Returns the slot of the fingerprint, or the empty slot where it
+	 *         belongs
+	 */
+	private int find(long fingerprint) {
+		int slot = (int) Helper.mix64(fingerprint) & mask;
+		while (ids[slot] != 0 && keys[slot] != fingerprint) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Double the capacity and re-insert every term.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldIds = ids;
+		allocate(2 * oldKeys.length);
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			if (oldIds[slot] != 0) {
+				int newSlot = find(oldKeys[slot]);
+				keys[newSlot] = oldKeys[slot];
+				ids[newSlot] = oldIds[slot];
+			}
+		}
+	}
+}
@@ -0,0 +1,324 @@
+package minhash;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Splits documents into terms and hashes every term, or shingle, to its 64
+ * bit fingerprint without creating a String. Files are read through NIO into
+ * a reused buffer, only very large ones memory mapped, and the bytes are
+ * scanned with a delimiter table: a term is a run of bytes other than
+ * , . : ; ' and white space, upper case ASCII letters are folded in a scratch
+ * buffer, terms shorter than 3 letters and "the" are left out, and the
+ * fingerprint is hashed from the folded bytes.
+ *
+ * A term with a byte outside ASCII is decoded from UTF-8 and lower cased as a
+ * String instead, so that its fingerprint is the same as for the String of
+ * the term. Scanner also ends lines at U+0085, U+2028 and U+2029, these split
+ * terms on that path.
+ *
+ * The features of a document are its terms, or shingles of them: the word
+ * k-grams, each hashed from the fingerprints of its k consecutive terms, or
+ * the character k-grams of the terms joined by single spaces, hashed with a
+ * rolling hash over k bytes (k characters for ASCII text). A document shorter
+ * than one shingle gets a single shingle of all it has. Word 1-grams are the
+ * terms themselves.
+ *
+ * A Tokenizer reuses its buffers and is not thread safe.
+ *
+ * @author YAN DENG
+ *
+ */
+public class Tokenizer {
+
+	/**
+	 * What the shingles of a document are made of.
+	 */
+	public enum Shingles {
+		/**
+		 * k consecutive terms
+		 */
+		WORD,
+		/**
+		 * k consecutive bytes of the terms joined by single spaces
+		 */
+		CHARACTER
+	}
+
+	private static final boolean[] DELIMITERS = new boolean[128];
+	static {
+		for (char c : ",.:;' \t\n\u000B\f\r".toCharArray()) {
+			DELIMITERS[c] = true;
+		}
+	}
+	// Files up to this size are read into the reused buffer. A mapping is only
+	// released when the GC collects its buffer, so mapping every mid-sized
+	// file of a large collection piles up mappings until vm.max_map_count or
+	// the address space runs out; only files larger than any typical document
+	// are mapped.
+	private static final int MAP_THRESHOLD = 1 << 24;
+	private static final int BUFFER_SIZE = 1 << 16; // first size of the buffer
+	private static final long ROLLING_BASE = 0x100000001b3L; // odd multiplier of
+																// the rolling hash
+
+	private Shingles shingles;
+	private int shingleSize; // k
+	private long[] window; // fingerprints of the last k terms, circular
+	private byte[] characters; // the last k bytes, circular
+	private long power; // ROLLING_BASE^k, removes the byte leaving the window
+	private long rolling; // rolling hash of the bytes in the window
+	private long numSeen; // number of terms (or bytes) seen in the document
+
+	private byte[] term = new byte[64]; // the folded bytes of the current term
+	private long[] hashes = new long[256]; // fingerprints of the last text
+	private int numHashes;
+	private ByteBuffer buffer; // files up to MAP_THRESHOLD are read into it,
+								// grown to the largest one read
+
+	/**
+	 * Constructor, a tokenizer whose features are the single terms.
+	 */
+	public Tokenizer() {
+		this(Shingles.WORD, 1);
+	}
+
+	/**
+	 * Constructor, a tokenizer whose features are shingles.
+	 *
+	 * @param shingles
+	 *            word or character shingles
+	 * @param shingleSize
+	 *            number of terms or characters of a shingle
+	 */
+	public Tokenizer(Shingles shingles, int shingleSize) {
+		if (shingleSize < 1)
+			throw new IllegalArgumentException("Shingle size should be greater or equal to 1.");
+		this.shingles = shingles;
+		this.shingleSize = shingleSize;
+		this.window = new long[shingleSize];
+		this.characters = new byte[shingleSize];
+		this.power = 1;
+		for (int i = 0; i < shingleSize; i++) {
+			power *= ROLLING_BASE;
+		}
+	}
+
+	/**
+	 * Tokenize a file.
+	 *
+	 * @param file
+	 * @return Returns the number of features found, their fingerprints are in
+	 *         hashes(), repeated ones included
+	 * @throws IOException
+	 */
+	public int tokenize(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("File " + file.getName() + " exceeds 2GB.");
+			if (size > MAP_THRESHOLD) {
+				return tokenize(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+			}
+			if (buffer == null || buffer.capacity() < size) {
+				int capacity = buffer == null ? BUFFER_SIZE : 2 * buffer.capacity();
+				buffer = ByteBuffer.allocateDirect((int) Math.min(MAP_THRESHOLD, Math.max(capacity, size)));
+			}
+			buffer.clear();
+			while (buffer.position() < size && channel.read(buffer) >= 0) {
+			}
+			buffer.flip();
+			return tokenize(buffer);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Tokenize a text.
+	 *
+	 * @param text
+	 * @return Returns the number of features found, their fingerprints are in
+	 *         hashes(), repeated ones included
+	 */
+	public int tokenize(String text) {
+		return tokenize(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Scan the UTF-8 bytes from the position to the limit of the buffer.
+	 *
+	 * @param bytes
+	 * @return Returns the number of features found
+	 */
+	public int tokenize(ByteBuffer bytes) {
+		numHashes = 0;
+		numSeen = 0;
+		rolling = 0;
+		int length = 0;
+		boolean ascii = true;
+		int limit = bytes.limit();
+		for (int i = bytes.position(); i <= limit; i++) {
+			int b = i < limit ? bytes.get(i) : ' ';
+			if (b >= 0 && DELIMITERS[b]) {
+				if (length > 0) {
+					addTerm(length, ascii);
+				}
+				length = 0;
+				ascii = true;
+				continue;
+			}
+			if (b < 0) {
+				ascii = false;
+			} else if (b >= 'A' && b <= 'Z') {
+				b += 'a' - 'A';
+			}
+			if (length == term.length) {
+				term = Arrays.copyOf(term, 2 * length);
+			}
+			term[length++] = (byte) b;
+		}
+		if (numSeen > 0 && numSeen < shingleSize) {
+			add(shingles == Shingles.WORD ? wordShingle((int) numSeen) : Helper.mix64(rolling));
+		}
+		return numHashes;
+	}
+
+	/**
+	 * Tokenize a text.
+	 *
+	 * @param text
+	 * @return Returns the sorted fingerprints of the distinct features of the
+	 *         text
+	 */
+	public long[] fingerprints(String text) {
+		int count = tokenize(text);
+		long[] hashes = Arrays.copyOf(this.hashes, count);
+		Arrays.sort(hashes);
+		int distinct = 0;
+		for (int i = 0; i < hashes.length; i++) {
+			if (i == 0 || hashes[i] != hashes[i - 1])
+				hashes[distinct++] = hashes[i];
+		}
+		return Arrays.copyOf(hashes, distinct);
+	}
+
+	/**
+	 * Hash the term in the scratch buffer, unless it is left out.
+	 */
+	private void addTerm(int length, boolean ascii) {
+		if (ascii) {
+			if (length < 3 || (length == 3 && term[0] == 't' && term[1] == 'h' && term[2] == 'e'))
+				return;
+			addTerm(Helper.hash64(term, 0, length), term, length);
+			return;
+		}
+		String text = new String(term, 0, length, StandardCharsets.UTF_8);
+		for (String word : text.split("[\\u0085\\u2028\\u2029]+")) {
+			word = word.toLowerCase();
+			if (!(word.length() < 3 || word.equals("the"))) {
+				byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+				addTerm(Helper.hash64(bytes, 0, bytes.length), bytes, bytes.length);
+			}
+		}
+	}
+
+	/**
+	 * Pass a kept term to the shingles.
+	 *
+	 * @param fingerprint
+	 *            fingerprint of the term
+	 * @param bytes
+	 *            lower cased UTF-8 bytes of the term
+	 * @param length
+	 *            number of bytes
+	 */
+	private void addTerm(long fingerprint, byte[] bytes, int length) {
+		if (shingles == Shingles.WORD) {
+			if (shingleSize == 1) {
+				add(fingerprint);
+				numSeen++;
+				return;
+			}
+			window[(int) (numSeen++ % shingleSize)] = fingerprint;
+			if (numSeen >= shingleSize) {
+				add(wordShingle(shingleSize));
+			}
+			return;
+		}
+		if (numSeen > 0) {
+			addCharacter((byte) ' ');
+		}
+		for (int i = 0; i < length; i++) {
+			addCharacter(bytes[i]);
+		}
+	}
+
+	/**
+	 *
+	 * @param size
+	 *            number of terms in the window
+	 * @return Returns the hash of the last size terms, in their order
+	 */
+	private long wordShingle(int size) {
+		long hash = size;
+		for (long j = numSeen - size; j < numSeen; j++) {
+			hash = (hash ^ window[(int) (j % shingleSize)]) * 0x9e3779b97f4a7c15L;
+			hash ^= hash >>> 29;
+		}
+		return Helper.mix64(hash);
+	}
+
+	/**
+	 * Slide the byte into the window of the character shingles.
+	 */
+	private void addCharacter(byte b) {
+		int slot = (int) (numSeen % shingleSize);
+		rolling = rolling * ROLLING_BASE + (b & 0xff);
+		if (numSeen >= shingleSize) {
+			rolling -= power * (characters[slot] & 0xff);
+		}
+		characters[slot] = b;
+		if (++numSeen >= shingleSize) {
+			add(Helper.mix64(rolling));
+		}
+	}
+
+	private void add(long hash) {
+		if (numHashes == hashes.length) {
+			hashes = Arrays.copyOf(hashes, 2 * numHashes);
+		}
+		hashes[numHashes++] = hash;
+	}
+
+	/**
+	 *
+	 * @return Returns the fingerprints found by the last call of tokenize, the
+	 *         array is reused by the next call
+	 */
+	public long[] hashes() {
+		return hashes;
+	}
+
+	/**
+	 *
+	 * @return Returns what the shingles are made of
+	 */
+	public Shingles shingles() {
+		return shingles;
+	}
+
+	/**
+	 *
+	 * @return Returns the number of terms or characters of a shingle
+	 */
+	public int shingleSize() {
+		return shingleSize;
+	}
+}
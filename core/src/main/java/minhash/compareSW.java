@@ -1,3 +1,5 @@
+package minhash;
+
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.HashSet;
@@ -0,0 +1,33 @@
+package minhash;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+
+public class testExactJac {
+
+	public static void main(String[] args) throws FileNotFoundException {
+		Corpus corpus = new Corpus("space");
+		final String[] files = corpus.docNames();
+		File outputFile=new File("exactJacsW");
+//		File outputFile=new File("exactJacsS");
+		final PrintWriter writer=new PrintWriter(outputFile);
+		long compare=(long) files.length*(files.length-1)/2;
+		final int[] count=new int[1];
+		// only the pairs with exactJaccard>=0.1 are found by the join
+		SimilarityJoin join=new SimilarityJoin(corpus, Runtime.getRuntime().availableProcessors());
+		join.join(0.1, new SimilarityJoin.PairHandler() {
+			public void pair(int doc1, int doc2, double exactJaccard) {
+				if(exactJaccard>0.1 && exactJaccard<0.105){
+					String file1=files[Math.min(doc1, doc2)];
+					String file2=files[Math.max(doc1, doc2)];
+					//System.out.println(file1+" "+file2+" "+exactJaccard);
+					writer.println(file1+" "+file2+" "+exactJaccard);
+					count[0]++;
+				}
+			}
+		});
+		writer.close(); 
+		System.out.println(count[0]+"/"+compare);
+	}
+}
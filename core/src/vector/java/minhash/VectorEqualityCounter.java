@@ -0,0 +1,96 @@
+package minhash;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Counts equal min hash values a vector at a time: the lanes of two runs are
+ * compared with one instruction and the equal ones are counted from the
+ * popcount of the comparison mask. The values left over after the last full
+ * vector are compared one by one. A query against a block of runs loads each
+ * vector of the query once for several runs.
+ *
+ * Uses the jdk.incubator.vector module, so it is compiled and run with
+ * --add-modules jdk.incubator.vector. EqualityCounter loads it by name and
+ * falls back to its scalar loop when the module is missing.
+ *
+ * @author YAN DENG
+ *
+ */
+public class VectorEqualityCounter extends EqualityCounter {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+	private static final int ROWS_PER_PASS = 4; // runs sharing each load of the query
+
+	@Override
+	public int count(int[] values1, int offset1, int[] values2, int offset2, int length) {
+		int count = 0;
+		int i = 0;
+		int upperBound = SPECIES.loopBound(length);
+		for (; i < upperBound; i += SPECIES.length()) {
+			IntVector v1 = IntVector.fromArray(SPECIES, values1, offset1 + i);
+			IntVector v2 = IntVector.fromArray(SPECIES, values2, offset2 + i);
+			count += v1.eq(v2).trueCount();
+		}
+		for (; i < length; i++) {
+			if (values1[offset1 + i] == values2[offset2 + i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Compares the query with ROWS_PER_PASS runs at a time: every vector of
+	 * the query is loaded once and compared with the same lanes of each of
+	 * the runs, so the query is read once per group instead of once per run.
+	 * The runs left over after the last full group are compared one by one.
+	 */
+	@Override
+	public void count(int[] query, int queryOffset, int[] values, int offset, int numRuns, int length, int[] counts) {
+		int upperBound = SPECIES.loopBound(length);
+		int j = 0;
+		for (; j + ROWS_PER_PASS <= numRuns; j += ROWS_PER_PASS) {
+			int offset0 = offset + j * length;
+			int offset1 = offset0 + length;
+			int offset2 = offset1 + length;
+			int offset3 = offset2 + length;
+			int count0 = 0;
+			int count1 = 0;
+			int count2 = 0;
+			int count3 = 0;
+			int i = 0;
+			for (; i < upperBound; i += SPECIES.length()) {
+				IntVector q = IntVector.fromArray(SPECIES, query, queryOffset + i);
+				count0 += q.eq(IntVector.fromArray(SPECIES, values, offset0 + i)).trueCount();
+				count1 += q.eq(IntVector.fromArray(SPECIES, values, offset1 + i)).trueCount();
+				count2 += q.eq(IntVector.fromArray(SPECIES, values, offset2 + i)).trueCount();
+				count3 += q.eq(IntVector.fromArray(SPECIES, values, offset3 + i)).trueCount();
+			}
+			for (; i < length; i++) {
+				int value = query[queryOffset + i];
+				count0 += values[offset0 + i] == value ? 1 : 0;
+				count1 += values[offset1 + i] == value ? 1 : 0;
+				count2 += values[offset2 + i] == value ? 1 : 0;
+				count3 += values[offset3 + i] == value ? 1 : 0;
+			}
+			counts[j] = count0;
+			counts[j + 1] = count1;
+			counts[j + 2] = count2;
+			counts[j + 3] = count3;
+		}
+		for (; j < numRuns; j++) {
+			counts[j] = count(query, queryOffset, values, offset + j * length, length);
+		}
+	}
+
+	@Override
+	public boolean vectorized() {
+		return true;
+	}
+
+	@Override
+	public int lanes() {
+		return SPECIES.length();
+	}
+}